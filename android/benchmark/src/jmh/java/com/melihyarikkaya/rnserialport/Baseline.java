@@ -0,0 +1,75 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The conversions as the module implemented them before the table-driven codec,
+ * kept here so every run measures both against the same payloads.
+ */
+final class Baseline {
+
+    private static final char[] hexArray = Definitions.hexChars.toCharArray();
+
+    private Baseline() {}
+
+    static String bytesToHex(byte[] bytes) {
+        char[] hexChars = new char[bytes.length * 2];
+        for (int j = 0; j < bytes.length; j++) {
+            int v = bytes[j] & 0xFF;
+            hexChars[j * 2] = hexArray[v >>> 4];
+            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+        }
+        return new String(hexChars);
+    }
+
+    /**
+     * The writeHexString loop; returns null where the module returned without writing.
+     */
+    static byte[] parseHex(String data) {
+        byte[] bytes = new byte[data.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int index = i * 2;
+
+            String hex = data.substring(index, index + 2);
+
+            if (Definitions.hexChars.indexOf(hex.substring(0, 1)) == -1 || Definitions.hexChars.indexOf(hex.substring(1, 2)) == -1) {
+                return null;
+            }
+
+            int v = Integer.parseInt(hex, 16);
+            bytes[i] = (byte) v;
+        }
+        return bytes;
+    }
+
+    static String hexToUtf16(String hex) {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < hex.length() - 1; i += 2) {
+            String byteStr = hex.substring(i, i + 2);
+            if (byteStr.equals("00")) break;
+            str.append((char) Integer.parseInt(byteStr, 16));
+        }
+        return str.toString();
+    }
+
+    static String intArrayToUtf16(int[] intArray) {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < intArray.length; i++) {
+            str.append((char) intArray[i]);
+        }
+        return str.toString();
+    }
+
+    /**
+     * JVM stand-in for the INTARRAY payload: one boxed element per byte, like the
+     * WritableNativeArray pushInt loop, minus the JNI transition per element.
+     */
+    static List<Integer> toIntArray(byte[] bytes) {
+        List<Integer> intArray = new ArrayList<>();
+        for (byte b : bytes) {
+            intArray.add(b & 0xFF);
+        }
+        return intArray;
+    }
+}
@@ -0,0 +1,57 @@
+package com.melihyarikkaya.rnserialport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing the hex string passed to writeHexString.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HexParseBenchmark {
+
+    @Param({"64", "1024", "16384", "65536"})
+    int size;
+
+    private String hex;
+    private String separatedHex;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = Payloads.bytes(size);
+        hex = Definitions.bytesToHex(bytes);
+
+        StringBuilder separated = new StringBuilder(hex.length() * 3 / 2);
+        for (int i = 0; i < hex.length(); i += 2) {
+            if (i > 0) {
+                separated.append(' ');
+            }
+            separated.append(hex, i, i + 2);
+        }
+        separatedHex = separated.toString();
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return HexCodec.decode(hex);
+    }
+
+    @Benchmark
+    public byte[] decodeSeparated() {
+        return HexCodec.decode(separatedHex);
+    }
+
+    @Benchmark
+    public byte[] decodeBaseline() {
+        return Baseline.parseHex(hex);
+    }
+}
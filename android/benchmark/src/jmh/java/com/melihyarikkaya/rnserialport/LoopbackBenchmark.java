@@ -0,0 +1,74 @@
+package com.melihyarikkaya.rnserialport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the pull read path: an unpaced loopback transport generating chunkSize
+ * reads into a ring buffer that pauses reading when full, drained by read().
+ * One operation moves 1 MB.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoopbackBenchmark {
+
+    private static final int BYTES_PER_OP = 1024 * 1024;
+
+    @Param({"64", "1024", "16384"})
+    int chunkSize;
+
+    @Param({"false", "true"})
+    boolean framed;
+
+    private LoopbackTransport transport;
+    private ReadRingBuffer ring;
+    private Framer framer;
+    private int frames;
+
+    private final Framer.Sink frameSink = new Framer.Sink() {
+        @Override
+        public void onFrame(byte[] frame) {
+            frames++;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        ring = new ReadRingBuffer(256 * 1024, Definitions.OVERFLOW_PAUSE_READING);
+        ring.open();
+        framer = new Framers.DelimiterFramer(new byte[] {'\n'}, false, Definitions.DEFAULT_MAX_FRAME_LENGTH);
+        byte[] line = "12.5,13.0,-4.25,1024\n".getBytes();
+        transport = new LoopbackTransport("bench", false, true, 0, chunkSize, line);
+        transport.open();
+        transport.startReading(data -> ring.write(data, 0, data.length), chunkSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ring.close();
+        transport.close();
+    }
+
+    @Benchmark
+    public int read() throws InterruptedException {
+        int total = 0;
+        while (total < BYTES_PER_OP) {
+            byte[] bytes = ring.read(64 * 1024, 1000);
+            if (framed) {
+                framer.feed(bytes, 0, bytes.length, frameSink);
+            }
+            total += bytes.length;
+        }
+        return total + frames;
+    }
+}
@@ -0,0 +1,38 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.Random;
+
+/**
+ * Deterministic payloads shared by the benchmarks.
+ */
+final class Payloads {
+
+    private Payloads() {}
+
+    static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Bytes without 0x00, so hexToUtf16 converts the whole payload instead of stopping early.
+     */
+    static byte[] nonZeroBytes(int size) {
+        byte[] bytes = bytes(size);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                bytes[i] = 1;
+            }
+        }
+        return bytes;
+    }
+
+    static int[] unsignedInts(byte[] bytes) {
+        int[] ints = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            ints[i] = bytes[i] & 0xFF;
+        }
+        return ints;
+    }
+}
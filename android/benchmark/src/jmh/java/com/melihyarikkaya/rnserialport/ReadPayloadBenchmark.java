@@ -0,0 +1,55 @@
+package com.melihyarikkaya.rnserialport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one read chunk into the payload of an onReadDataFromPort event,
+ * for each returned data type.
+ * java.util.Base64 stands in for android.util.Base64, which uses the same algorithm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadPayloadBenchmark {
+
+    @Param({"64", "1024", "16384", "65536"})
+    int size;
+
+    private byte[] chunk;
+
+    @Setup
+    public void setup() {
+        chunk = Payloads.bytes(size);
+    }
+
+    @Benchmark
+    public List<Integer> intArray() {
+        return Baseline.toIntArray(chunk);
+    }
+
+    @Benchmark
+    public String hexString() {
+        return Definitions.bytesToHex(chunk);
+    }
+
+    @Benchmark
+    public String hexStringBaseline() {
+        return Baseline.bytesToHex(chunk);
+    }
+
+    @Benchmark
+    public String base64() {
+        return Base64.getEncoder().encodeToString(chunk);
+    }
+}
@@ -0,0 +1,50 @@
+package com.melihyarikkaya.rnserialport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the hexToUtf16 and intArrayToUtf16 helpers.
+ * intArrayToUtf16 runs over an int[]; reading the ReadableArray is not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Utf16Benchmark {
+
+    @Param({"64", "1024", "16384", "65536"})
+    int size;
+
+    private String hex;
+    private int[] ints;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = Payloads.nonZeroBytes(size);
+        hex = Definitions.bytesToHex(bytes);
+        ints = Payloads.unsignedInts(bytes);
+    }
+
+    @Benchmark
+    public String hexToUtf16() {
+        return HexCodec.decodeToUtf16(hex);
+    }
+
+    @Benchmark
+    public String hexToUtf16Baseline() {
+        return Baseline.hexToUtf16(hex);
+    }
+
+    @Benchmark
+    public String intArrayToUtf16() {
+        return Baseline.intArrayToUtf16(ints);
+    }
+}
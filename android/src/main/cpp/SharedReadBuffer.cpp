@@ -0,0 +1,85 @@
+#include <jni.h>
+#include <jsi/jsi.h>
+
+#include <atomic>
+#include <memory>
+
+using namespace facebook;
+
+namespace {
+
+JavaVM *gJavaVm = nullptr;
+
+// Exposes the memory of a java.nio direct ByteBuffer to JS without copying.
+// Holds a global reference so the Java buffer outlives every JS ArrayBuffer using it.
+class DirectByteBuffer : public jsi::MutableBuffer {
+ public:
+  DirectByteBuffer(JNIEnv *env, jobject buffer)
+      : buffer_(env->NewGlobalRef(buffer)),
+        data_(static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer))),
+        size_(static_cast<size_t>(env->GetDirectBufferCapacity(buffer))) {}
+
+  ~DirectByteBuffer() override {
+    JNIEnv *env = nullptr;
+    bool attached = false;
+    if (gJavaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) == JNI_EDETACHED) {
+      if (gJavaVm->AttachCurrentThread(&env, nullptr) != JNI_OK) {
+        return;
+      }
+      attached = true;
+    }
+    env->DeleteGlobalRef(buffer_);
+    if (attached) {
+      gJavaVm->DetachCurrentThread();
+    }
+  }
+
+  size_t size() const override {
+    return size_;
+  }
+
+  uint8_t *data() override {
+    return data_;
+  }
+
+ private:
+  jobject buffer_;
+  uint8_t *data_;
+  size_t size_;
+};
+
+constexpr size_t kStartCursorOffset = 0;
+constexpr size_t kEndCursorOffset = 8;
+
+} // namespace
+
+extern "C" JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *) {
+  gJavaVm = vm;
+  return JNI_VERSION_1_6;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_melihyarikkaya_rnserialport_SharedReadBuffer_nativeInstall(
+    JNIEnv *env, jclass, jlong runtimePointer, jobject buffer, jstring propertyName) {
+  auto &runtime = *reinterpret_cast<jsi::Runtime *>(runtimePointer);
+
+  const char *name = env->GetStringUTFChars(propertyName, nullptr);
+  jsi::ArrayBuffer arrayBuffer(runtime, std::make_shared<DirectByteBuffer>(env, buffer));
+  runtime.global().setProperty(runtime, name, std::move(arrayBuffer));
+  env->ReleaseStringUTFChars(propertyName, name);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_melihyarikkaya_rnserialport_SharedReadBuffer_nativeWrite(
+    JNIEnv *env, jclass, jobject buffer, jint bufferOffset, jbyteArray data, jint offset, jint length, jdouble cursor) {
+  auto *base = static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+  std::atomic_ref<double> startCursor(*reinterpret_cast<double *>(base + kStartCursorOffset));
+  std::atomic_ref<double> endCursor(*reinterpret_cast<double *>(base + kEndCursorOffset));
+
+  // Seqlock writer: the new start cursor must be visible before any byte of the chunk it
+  // reserves is overwritten, and the end cursor only after all of them are.
+  startCursor.store(cursor, std::memory_order_relaxed);
+  std::atomic_thread_fence(std::memory_order_release);
+  env->GetByteArrayRegion(data, offset, length, reinterpret_cast<jbyte *>(base + bufferOffset));
+  endCursor.store(cursor, std::memory_order_release);
+}
@@ -0,0 +1,83 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven base64 decoder writing into a caller's buffer, so written data can be
+ * decoded into a pooled buffer instead of a new array.
+ *
+ * Skips whitespace and stops at the first '=' padding, like android.util.Base64 with
+ * DEFAULT flags, but is more lenient: '-' and '_' of the url safe alphabet are accepted
+ * too, which DEFAULT rejects and only URL_SAFE takes.
+ */
+final class Base64Codec {
+
+    private static final byte INVALID = -1;
+    private static final byte SKIP = -2;
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+        VALUES['-'] = 62;
+        VALUES['_'] = 63;
+        for (char c : new char[] {' ', '\t', '\r', '\n'}) {
+            VALUES[c] = SKIP;
+        }
+    }
+
+    private Base64Codec() {}
+
+    /**
+     * @return the most bytes base64 of this length can decode to
+     */
+    static int maxDecodedLength(CharSequence base64) {
+        return (base64.length() + 3) / 4 * 3;
+    }
+
+    /**
+     * Decodes base64 into out, which needs room for maxDecodedLength(base64) bytes.
+     *
+     * @return the number of decoded bytes, or -1 if base64 contains an invalid character
+     * or ends with a single leftover character
+     */
+    static int decode(CharSequence base64, byte[] out) {
+        int count = 0;
+        int bits = 0;
+        int pending = 0;
+        for (int i = 0, n = base64.length(); i < n; i++) {
+            char c = base64.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int value = c < 128 ? VALUES[c] : INVALID;
+            if (value == SKIP) {
+                continue;
+            }
+            if (value == INVALID) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            if (++pending == 4) {
+                out[count++] = (byte) (bits >> 16);
+                out[count++] = (byte) (bits >> 8);
+                out[count++] = (byte) bits;
+                bits = 0;
+                pending = 0;
+            }
+        }
+        if (pending == 1) {
+            return -1;
+        }
+        if (pending == 2) {
+            out[count++] = (byte) (bits >> 4);
+        } else if (pending == 3) {
+            out[count++] = (byte) (bits >> 10);
+            out[count++] = (byte) (bits >> 2);
+        }
+        return count;
+    }
+}
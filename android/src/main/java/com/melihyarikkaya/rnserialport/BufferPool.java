@@ -0,0 +1,98 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte buffers in power of two size classes from 64 bytes to 64 KB, kept for reuse.
+ *
+ * A buffer is acquired from the smallest class holding the requested length, so it is
+ * usually longer than asked for and is passed around with its length. Each class keeps at
+ * most maxPerClass released buffers; larger requests are plain allocations and are never
+ * kept. Once every class in use holds a buffer, steady streaming allocates nothing.
+ */
+class BufferPool {
+
+    private static final int MIN_SHIFT = 6;
+    private static final int MAX_SHIFT = 16;
+
+    private final int maxPerClass;
+    private final ArrayDeque<byte[]>[] classes;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    BufferPool(int maxPerClass) {
+        this.maxPerClass = maxPerClass;
+        this.classes = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ArrayDeque<>(maxPerClass);
+        }
+    }
+
+    /**
+     * @return a buffer of at least minLength bytes with undefined content
+     */
+    byte[] acquire(int minLength) {
+        acquired.incrementAndGet();
+        int index = classIndex(minLength);
+        if (index >= 0) {
+            ArrayDeque<byte[]> pooled = classes[index];
+            synchronized (pooled) {
+                byte[] buffer = pooled.poll();
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        }
+        int length = index >= 0 ? 1 << (index + MIN_SHIFT) : minLength;
+        allocated.incrementAndGet();
+        allocatedBytes.addAndGet(length);
+        return new byte[length];
+    }
+
+    /**
+     * Gives a buffer back; buffers that are not of a class size, or whose class is full,
+     * are left to the garbage collector.
+     */
+    void release(byte[] buffer) {
+        int index = classIndex(buffer.length);
+        if (index < 0 || buffer.length != 1 << (index + MIN_SHIFT)) {
+            return;
+        }
+        ArrayDeque<byte[]> pooled = classes[index];
+        synchronized (pooled) {
+            if (pooled.size() < maxPerClass) {
+                pooled.push(buffer);
+            }
+        }
+    }
+
+    long acquired() {
+        return acquired.get();
+    }
+
+    /**
+     * Acquires the pool could not serve from a released buffer.
+     */
+    long allocated() {
+        return allocated.get();
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return the class of the smallest buffer holding length bytes, -1 above the largest
+     */
+    private static int classIndex(int length) {
+        if (length > 1 << MAX_SHIFT) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(1, length) - 1);
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+}
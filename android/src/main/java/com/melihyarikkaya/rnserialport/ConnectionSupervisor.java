@@ -0,0 +1,194 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection state machine of one port.
+ *
+ *   IDLE -> CONNECTING -> CONNECTED -> WAITING_FOR_DEVICE -> CONNECTING -> ...
+ *                 |                                             |
+ *                 +-> RETRY_WAIT -> CONNECTING                  +-> RETRY_WAIT ...
+ *
+ * Opening runs on the port's connection thread, which is reused for every attempt.
+ * Without auto reconnect a failed open or a lost device ends the port, as it always did.
+ * With it, failed opens are retried with exponential backoff and a lost device waits for
+ * the same device to come back; the time from losing the link to having it back is
+ * reported in an onReconnected event.
+ */
+class ConnectionSupervisor {
+
+    static final int STATE_IDLE               = 0;
+    static final int STATE_CONNECTING         = 1;
+    static final int STATE_CONNECTED          = 2;
+    static final int STATE_RETRY_WAIT         = 3;
+    static final int STATE_WAITING_FOR_DEVICE = 4;
+    static final int STATE_CLOSED             = 5;
+
+    private final PortSession session;
+    private final RNSerialportModule module;
+
+    private int state = STATE_IDLE;
+    private int failedAttempts = 0;
+    // When the link of a port that was connected went down, 0 while connected.
+    private long lostAtNanos = 0;
+    private boolean wasConnected = false;
+    private ScheduledExecutorService executor;
+
+    ConnectionSupervisor(PortSession session, RNSerialportModule module) {
+        this.session = session;
+        this.module = module;
+    }
+
+    synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Starts an open attempt, unless one is running or the port is connected or closed.
+     */
+    synchronized void connect() {
+        if (state == STATE_CONNECTING || state == STATE_CONNECTED || state == STATE_CLOSED) {
+            return;
+        }
+        setState(STATE_CONNECTING);
+        executor().execute(this::attempt);
+    }
+
+    /**
+     * Closes the link after the device went away. With auto reconnect the port waits for
+     * the device to come back.
+     *
+     * @return false if the port should be stopped instead
+     */
+    boolean onDeviceLost() {
+        synchronized (this) {
+            if (!session.settings.autoReconnect || state == STATE_CLOSED) {
+                return false;
+            }
+            if (state == STATE_WAITING_FOR_DEVICE) {
+                return true;
+            }
+            if (lostAtNanos == 0 && wasConnected) {
+                lostAtNanos = System.nanoTime();
+            }
+            failedAttempts = 0;
+            setState(STATE_WAITING_FOR_DEVICE);
+        }
+        session.closeLink();
+        return true;
+    }
+
+    synchronized boolean isWaitingForDevice() {
+        return state == STATE_WAITING_FOR_DEVICE;
+    }
+
+    synchronized boolean isReconnecting() {
+        return state == STATE_WAITING_FOR_DEVICE || state == STATE_RETRY_WAIT;
+    }
+
+    synchronized void close() {
+        state = STATE_CLOSED;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized void retry() {
+        if (state == STATE_RETRY_WAIT) {
+            setState(STATE_CONNECTING);
+            executor().execute(this::attempt);
+        }
+    }
+
+    private void attempt() {
+        boolean opened;
+        int errorCode = Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT;
+        String errorMessage = Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT_MESSAGE;
+        try {
+            opened = session.openLink();
+        } catch (Exception e) {
+            opened = false;
+            errorCode = Definitions.ERROR_CONNECTION_FAILED;
+            errorMessage = Definitions.ERROR_CONNECTION_FAILED_MESSAGE + " Exception: " + e.getMessage();
+        }
+
+        int attempts;
+        long recoverNanos = 0;
+        boolean giveUp = false;
+        synchronized (this) {
+            if (state != STATE_CONNECTING) {
+                // Closed while opening.
+                if (opened) {
+                    session.closeLink();
+                }
+                return;
+            }
+            attempts = failedAttempts + 1;
+            if (opened) {
+                if (lostAtNanos != 0) {
+                    recoverNanos = System.nanoTime() - lostAtNanos;
+                }
+                lostAtNanos = 0;
+                failedAttempts = 0;
+                wasConnected = true;
+                setState(STATE_CONNECTED);
+            } else {
+                failedAttempts = attempts;
+                int maxAttempts = session.settings.reconnectMaxAttempts;
+                if (!session.settings.autoReconnect || (maxAttempts > 0 && attempts >= maxAttempts)) {
+                    giveUp = true;
+                } else {
+                    setState(STATE_RETRY_WAIT);
+                    executor().schedule(this::retry, backoffMillis(attempts), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        if (opened) {
+            session.emit(module.onConnectedEvent, session.createParams());
+            if (recoverNanos != 0) {
+                WritableMap params = session.createParams();
+                params.putDouble("recoverMs", recoverNanos / 1_000_000.0);
+                params.putInt("attempts", attempts);
+                session.emit(module.onReconnectedEvent, params);
+            }
+        } else if (giveUp) {
+            session.emit(module.onErrorEvent, session.createError(errorCode, errorMessage));
+            module.onSessionFailed(session);
+        }
+    }
+
+    private long backoffMillis(int failedAttempts) {
+        long initial = Math.max(1, session.settings.reconnectInitialDelayMs);
+        long max = Math.max(initial, session.settings.reconnectMaxDelayMs);
+        int shift = Math.min(failedAttempts - 1, 30);
+        return Math.min(initial << shift, max);
+    }
+
+    // Called with the lock held.
+    private void setState(int newState) {
+        if (state == newState) {
+            return;
+        }
+        int previous = state;
+        state = newState;
+        WritableMap params = session.createParams();
+        params.putInt("state", newState);
+        params.putInt("previousState", previous);
+        params.putInt("failedAttempts", failedAttempts);
+        session.emit(module.onConnectionStateEvent, params);
+    }
+
+    // Called with the lock held.
+    private ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "RNSerialport-connection-" + session.id));
+        }
+        return executor;
+    }
+}
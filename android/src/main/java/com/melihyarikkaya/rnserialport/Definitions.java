@@ -26,6 +26,22 @@ public class Definitions {
     public static final int ERROR_DEVICE_NOT_SUPPORTED            = 16;
     public static final int ERROR_SERVICE_ALREADY_STARTED         = 17;
     public static final int ERROR_SERVICE_ALREADY_STOPPED         = 18;
+    public static final int ERROR_FRAMING_INVALID                 = 19;
+    public static final int ERROR_READ_BUFFER_NOT_ENABLED         = 20;
+    public static final int ERROR_PORT_NOT_FOUND                  = 21;
+    public static final int ERROR_WRITE_QUEUE_FULL                = 22;
+    public static final int ERROR_WRITE_FAILED                    = 23;
+    public static final int ERROR_TRANSACTION_TIMEOUT             = 24;
+    public static final int ERROR_TRANSACTION_OVERFLOW            = 25;
+    public static final int ERROR_MODBUS_EXCEPTION                = 26;
+    public static final int ERROR_MODBUS_INVALID_RESPONSE         = 27;
+    public static final int ERROR_MODBUS_INVALID_REQUEST          = 28;
+    public static final int ERROR_CAPTURE_FAILED                  = 29;
+    public static final int ERROR_CHARSET_NOT_SUPPORTED           = 30;
+    public static final int ERROR_PERIODIC_WRITE_INVALID          = 31;
+    public static final int ERROR_TELEMETRY_INVALID               = 32;
+    public static final int ERROR_FILE_TRANSFER_FAILED            = 33;
+    public static final int ERROR_INVALID_ENCODED_DATA            = 34;
 
 
     public static final String ERROR_DEVICE_NOT_FOUND_MESSAGE                   = "Device not found!";
@@ -46,22 +62,87 @@ public class Definitions {
     public static final String ERROR_DEVICE_NOT_SUPPORTED_MESSAGE               = "Device not supported";
     public static final String ERROR_SERVICE_ALREADY_STARTED_MESSAGE            = "Usb service is already started";;
     public static final String ERROR_SERVICE_ALREADY_STOPPED_MESSAGE            = "Usb service is already stopped";;
+    public static final String ERROR_FRAMING_INVALID_MESSAGE                    = "Framing options are invalid";
+    public static final String ERROR_READ_BUFFER_NOT_ENABLED_MESSAGE            = "Read buffer is not enabled. Please first call setReadRingBuffer";
+    public static final String ERROR_PORT_NOT_FOUND_MESSAGE                     = "No port with id ";
+    public static final String ERROR_WRITE_QUEUE_FULL_MESSAGE                   = "Write queue is full";
+    public static final String ERROR_WRITE_FAILED_MESSAGE                       = "Error writing to port";
+    public static final String ERROR_TRANSACTION_TIMEOUT_MESSAGE                = "No matching response before the transaction timeout";
+    public static final String ERROR_TRANSACTION_OVERFLOW_MESSAGE               = "Response exceeded maxResponseLength without a match";
+    public static final String ERROR_MODBUS_EXCEPTION_MESSAGE                   = "Modbus exception response, code ";
+    public static final String ERROR_MODBUS_INVALID_RESPONSE_MESSAGE            = "Invalid modbus response: ";
+    public static final String ERROR_MODBUS_INVALID_REQUEST_MESSAGE             = "Invalid modbus request: ";
+    public static final String ERROR_CAPTURE_FAILED_MESSAGE                     = "Capture failed: ";
+    public static final String ERROR_CHARSET_NOT_SUPPORTED_MESSAGE              = "Charset is not supported: ";
+    public static final String ERROR_PERIODIC_WRITE_INVALID_MESSAGE             = "Invalid periodic write: ";
+    public static final String ERROR_TELEMETRY_INVALID_MESSAGE                  = "Invalid telemetry layout: ";
+    public static final String ERROR_FILE_TRANSFER_FAILED_MESSAGE               = "File transfer failed: ";
+    public static final String ERROR_INVALID_ENCODED_DATA_MESSAGE               = "Invalid encoded data: ";
     ///////////////////////////////////////////////////////////
 
     public static final int RETURNED_DATA_TYPE_INTARRAY = 1;
     public static final int RETURNED_DATA_TYPE_HEXSTRING = 2;
+    public static final int RETURNED_DATA_TYPE_BASE64 = 3;
+    public static final int RETURNED_DATA_TYPE_SHARED_BUFFER = 4;
+    public static final int RETURNED_DATA_TYPE_TEXT = 5;
+
+    public static final int FRAMING_NONE          = 0;
+    public static final int FRAMING_DELIMITER     = 1;
+    public static final int FRAMING_FIXED_LENGTH  = 2;
+    public static final int FRAMING_LENGTH_PREFIX = 3;
+    public static final int FRAMING_SLIP          = 4;
+    public static final int FRAMING_COBS          = 5;
+
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+
+    public static final int CHECKSUM_NONE         = 0;
+    public static final int CHECKSUM_XOR          = 1;
+    public static final int CHECKSUM_LRC          = 2;
+    public static final int CHECKSUM_CRC8         = 3;
+    public static final int CHECKSUM_CRC16_MODBUS = 4;
+    public static final int CHECKSUM_CRC16_CCITT  = 5;
+    public static final int CHECKSUM_CRC32        = 6;
+
+    public static final int TELEMETRY_NONE      = 0;
+    public static final int TELEMETRY_CSV       = 1;
+    public static final int TELEMETRY_KEY_VALUE = 2;
+    public static final int DEFAULT_TELEMETRY_WINDOW_MS = 1000;
+
+    public static final int OVERFLOW_DROP_OLDEST  = 1;
+    public static final int OVERFLOW_DROP_NEWEST  = 2;
+    public static final int OVERFLOW_PAUSE_READING = 3;
+
+    public static final int DEFAULT_WRITE_QUEUE_BYTES   = 1024 * 1024;
+    public static final int DEFAULT_WRITE_TRANSFER_SIZE = 16 * 1024;
+
+    public static final int DISPATCH_QUEUE_CHUNKS = 256;
+    public static final int DISPATCH_DRAIN_TIMEOUT_MS = 500;
+    // How long stopping a port's dispatch or writer thread waits for it to end.
+    public static final int THREAD_STOP_TIMEOUT_MS = 1000;
+    public static final int BUFFER_POOL_BUFFERS_PER_CLASS = 8;
+
+    public static final int DEFAULT_TRANSACTION_TIMEOUT_MS = 1000;
+    public static final int MODBUS_MAX_FRAME_LENGTH = 256;
+
+    public static final int DEFAULT_RECONNECT_INITIAL_DELAY_MS = 250;
+    public static final int DEFAULT_RECONNECT_MAX_DELAY_MS     = 10_000;
+
+    public static final int DEFAULT_CAPTURE_FILE_BYTES  = 16 * 1024 * 1024;
+    public static final int DEFAULT_CAPTURE_QUEUE_BYTES = 4 * 1024 * 1024;
+
+    public static final int FILE_TRANSFER_RAW       = 0;
+    public static final int FILE_TRANSFER_XMODEM    = 1;
+    public static final int FILE_TRANSFER_XMODEM_1K = 2;
+    public static final int FILE_TRANSFER_YMODEM    = 3;
+    public static final int DEFAULT_FILE_TRANSFER_TIMEOUT_MS      = 10_000;
+    public static final int DEFAULT_FILE_TRANSFER_IDLE_TIMEOUT_MS = 2000;
+    public static final int DEFAULT_FILE_TRANSFER_MAX_RETRIES     = 10;
+    public static final int DEFAULT_FILE_TRANSFER_PROGRESS_MS     = 250;
 
     public final static String hexChars = "0123456789ABCDEF";
-    private final static char[] hexArray = hexChars.toCharArray();
 
     public static String bytesToHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
-        for ( int j = 0; j < bytes.length; j++ ) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
-        }
-        return new String(hexChars);
+        return HexCodec.encode(bytes);
     }
 
 }
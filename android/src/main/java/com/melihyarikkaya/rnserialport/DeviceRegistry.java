@@ -0,0 +1,256 @@
+package com.melihyarikkaya.rnserialport;
+
+import android.hardware.usb.UsbDevice;
+
+import com.felhr.deviceids.CH34xIds;
+import com.felhr.deviceids.CP210xIds;
+import com.felhr.deviceids.FTDISioIds;
+import com.felhr.deviceids.PL2303Ids;
+import com.felhr.usbserial.UsbSerialDevice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * Attached usb devices, indexed by name, vendor/product id and serial number.
+ *
+ * Filled from the device list once when the usb service starts, then kept up to date
+ * from the attach and detach broadcasts, so lookups never rescan the usb bus.
+ * Devices are kept in attach order.
+ */
+class DeviceRegistry {
+
+    static class Entry {
+        final UsbDevice device;
+        final String name;
+        final int vendorId;
+        final int productId;
+        @Nullable final String serialNumber;
+        final int interfaceCount;
+        @Nullable final String driver;
+
+        Entry(UsbDevice device) {
+            this.device = device;
+            this.name = device.getDeviceName();
+            this.vendorId = device.getVendorId();
+            this.productId = device.getProductId();
+            this.serialNumber = readSerialNumber(device);
+            this.interfaceCount = device.getInterfaceCount();
+            this.driver = detectDriver(device);
+        }
+    }
+
+    /**
+     * Matches devices on the set fields; -1 and null match anything. A multiple rule lets
+     * auto-connect open its devices while other ports are connected.
+     */
+    static class MatchRule {
+        final int vendorId;
+        final int productId;
+        @Nullable final String serialNumber;
+        @Nullable final String driver;
+        final boolean exclude;
+        final boolean multiple;
+
+        MatchRule(int vendorId, int productId, @Nullable String serialNumber, @Nullable String driver, boolean exclude, boolean multiple) {
+            this.vendorId = vendorId;
+            this.productId = productId;
+            this.serialNumber = serialNumber;
+            this.driver = driver;
+            this.exclude = exclude;
+            this.multiple = multiple;
+        }
+
+        boolean matches(Entry entry) {
+            return (vendorId < 0 || vendorId == entry.vendorId)
+                    && (productId < 0 || productId == entry.productId)
+                    && (serialNumber == null || serialNumber.equals(entry.serialNumber))
+                    && (driver == null || driver.equals(entry.driver));
+        }
+    }
+
+    /**
+     * Skips usb root hubs and the Qualcomm modem interface found on many boards.
+     */
+    static List<MatchRule> defaultRules() {
+        List<MatchRule> rules = new ArrayList<>();
+        rules.add(new MatchRule(0x1d6b, -1, null, null, true, false));
+        rules.add(new MatchRule(0x05c6, 0x904c, null, null, true, false));
+        return rules;
+    }
+
+    private final Map<String, Entry> byName = new LinkedHashMap<>();
+    private final Map<Long, List<Entry>> byVendorProduct = new LinkedHashMap<>();
+    private final Map<String, List<Entry>> bySerialNumber = new LinkedHashMap<>();
+
+    synchronized void reset(Collection<UsbDevice> devices) {
+        byName.clear();
+        byVendorProduct.clear();
+        bySerialNumber.clear();
+        for (UsbDevice device : devices) {
+            add(device);
+        }
+    }
+
+    /**
+     * Adds a device, or reads it again if it is known; the serial number may only be
+     * readable once the app has permission for the device.
+     */
+    synchronized Entry add(UsbDevice device) {
+        remove(device.getDeviceName());
+        Entry entry = new Entry(device);
+        byName.put(entry.name, entry);
+        index(byVendorProduct, vendorProductKey(entry.vendorId, entry.productId), entry);
+        if (entry.serialNumber != null) {
+            index(bySerialNumber, entry.serialNumber, entry);
+        }
+        return entry;
+    }
+
+    @Nullable
+    synchronized Entry remove(String name) {
+        Entry entry = byName.remove(name);
+        if (entry == null) {
+            return null;
+        }
+        unindex(byVendorProduct, vendorProductKey(entry.vendorId, entry.productId), entry);
+        if (entry.serialNumber != null) {
+            unindex(bySerialNumber, entry.serialNumber, entry);
+        }
+        return entry;
+    }
+
+    @Nullable
+    synchronized Entry get(String name) {
+        return byName.get(name);
+    }
+
+    synchronized List<Entry> all() {
+        return new ArrayList<>(byName.values());
+    }
+
+    /**
+     * @return the devices matching every set field, in attach order
+     */
+    synchronized List<Entry> find(int vendorId, int productId, @Nullable String serialNumber) {
+        Collection<Entry> candidates;
+        if (serialNumber != null) {
+            candidates = bySerialNumber.get(serialNumber);
+        } else if (vendorId >= 0 && productId >= 0) {
+            candidates = byVendorProduct.get(vendorProductKey(vendorId, productId));
+        } else {
+            candidates = byName.values();
+        }
+        List<Entry> found = new ArrayList<>();
+        if (candidates == null) {
+            return found;
+        }
+        MatchRule rule = new MatchRule(vendorId, productId, serialNumber, null, false, false);
+        for (Entry entry : candidates) {
+            if (rule.matches(entry)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Picks a device by the rules. The first rule a device matches decides: exclude rules
+     * drop it, include rules select it, earlier include rules winning over later ones.
+     * Devices no rule matches are selectable only when there are no include rules.
+     *
+     * @param skip devices to leave out, such as the ones already connected
+     */
+    @Nullable
+    synchronized Entry choose(List<MatchRule> rules, Predicate<Entry> skip) {
+        boolean hasIncludeRule = false;
+        for (MatchRule rule : rules) {
+            hasIncludeRule |= !rule.exclude;
+        }
+        Entry best = null;
+        int bestRank = Integer.MAX_VALUE;
+        for (Entry entry : byName.values()) {
+            int rank = hasIncludeRule ? Integer.MAX_VALUE : rules.size();
+            MatchRule rule = firstMatch(rules, entry);
+            if (rule != null) {
+                rank = rule.exclude ? Integer.MAX_VALUE : rules.indexOf(rule);
+            }
+            if (rank < bestRank && !skip.test(entry)) {
+                best = entry;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the first rule entry matches, or null if none does
+     */
+    @Nullable
+    static MatchRule firstMatch(List<MatchRule> rules, Entry entry) {
+        for (MatchRule rule : rules) {
+            if (rule.matches(entry)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The driver the UsbSerial library picks for the device in AUTO mode, or null if it
+     * has none.
+     */
+    @Nullable
+    static String detectDriver(UsbDevice device) {
+        int vendorId = device.getVendorId();
+        int productId = device.getProductId();
+        if (FTDISioIds.isDeviceSupported(device)) {
+            return "ftdi";
+        } else if (CP210xIds.isDeviceSupported(vendorId, productId)) {
+            return "cp210x";
+        } else if (PL2303Ids.isDeviceSupported(vendorId, productId)) {
+            return "pl2303";
+        } else if (CH34xIds.isDeviceSupported(vendorId, productId)) {
+            return "ch34x";
+        } else if (UsbSerialDevice.isCdcDevice(device)) {
+            return "cdc";
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String readSerialNumber(UsbDevice device) {
+        try {
+            return device.getSerialNumber();
+        } catch (SecurityException err) {
+            // Android 10 and above only give it out with permission for the device.
+            return null;
+        }
+    }
+
+    private static long vendorProductKey(int vendorId, int productId) {
+        return ((long) vendorId << 16) | productId;
+    }
+
+    private static <K> void index(Map<K, List<Entry>> map, K key, Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            map.put(key, entries);
+        }
+        entries.add(entry);
+    }
+
+    private static <K> void unindex(Map<K, List<Entry>> map, K key, Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            map.remove(key);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Suppresses a frame or decoded line that repeats the previous one.
+ *
+ * Frames are compared by length and a 64 bit FNV-1a hash first; only when both match are the
+ * bytes compared against a copy of the last frame, so a hash collision never drops a changed
+ * frame. The copy lives in a buffer that only grows.
+ *
+ * With a heartbeat, a repeat is let through once heartbeatMs passed since the last emitted
+ * event, so listeners can tell a steady value from a dead link. It is checked when data
+ * arrives; nothing is emitted while the link is silent.
+ */
+class DuplicateFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long heartbeatNanos;
+
+    private boolean hasLast = false;
+    private long lastHash;
+    private byte[] last = new byte[0];
+    private int lastLength;
+    private long lastEmitNanos;
+
+    DuplicateFilter(long heartbeatMs) {
+        this.heartbeatNanos = Math.max(0, heartbeatMs) * 1_000_000L;
+    }
+
+    /**
+     * @return true if data repeats the previous frame and should not be emitted
+     */
+    synchronized boolean suppress(byte[] data) {
+        long hash = hash(data);
+        long now = System.nanoTime();
+        if (hasLast && hash == lastHash && data.length == lastLength && sameAsLast(data)
+                && (heartbeatNanos == 0 || now - lastEmitNanos < heartbeatNanos)) {
+            return true;
+        }
+        if (last.length < data.length) {
+            last = new byte[data.length];
+        }
+        System.arraycopy(data, 0, last, 0, data.length);
+        hasLast = true;
+        lastHash = hash;
+        lastLength = data.length;
+        lastEmitNanos = now;
+        return false;
+    }
+
+    private boolean sameAsLast(byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != last[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long hash(byte[] data) {
+        long hash = FNV_OFFSET;
+        for (byte b : data) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,666 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sends a file to, or receives a file from, one port on its own thread.
+ *
+ * RAW streams the file in chunkSize pooled chunks through the port's writer, waiting for
+ * room in the write queue, and ends once every byte was handed to the driver. Receiving
+ * RAW writes the read data to the file until length bytes arrived or the line was idle
+ * for idleTimeoutMs.
+ *
+ * XMODEM (128 byte blocks), XMODEM_1K (1024 byte blocks) and YMODEM (1024 byte blocks
+ * after a header with name and size) run the protocol natively: blocks are resent on NAK
+ * or after timeoutMs, up to maxRetries times, and two CAN bytes abort. The sender follows
+ * the receiver's choice of CRC or checksum, the receiver asks for CRC. Received XMODEM
+ * files lose the trailing SUB (0x1A) padding of the last block, YMODEM ones are cut to
+ * the size of the header.
+ *
+ * While RAW receives or a modem protocol runs, all read data goes to the transfer instead
+ * of the read pipeline; for RAW with a length, only up to length bytes do. Progress events
+ * come at most every progressIntervalMs.
+ */
+class FileTransfer {
+
+    private static final byte SOH = 0x01;
+    private static final byte STX = 0x02;
+    private static final byte EOT = 0x04;
+    private static final byte ACK = 0x06;
+    private static final byte NAK = 0x15;
+    private static final byte CAN = 0x18;
+    private static final byte SUB = 0x1A;
+    private static final byte CRC_REQUEST = 'C';
+    // How often a receiver repeats its request until the sender starts.
+    private static final long START_REQUEST_MS = 3000;
+
+    // readPacket results besides a block length.
+    private static final int PACKET_EOT = 0;
+    private static final int PACKET_TIMEOUT = -1;
+    private static final int PACKET_BAD = -2;
+
+    private final PortSession session;
+    private final RNSerialportModule module;
+    private final File file;
+    private final int protocol;
+    private final boolean sending;
+    private final int chunkSize;
+    private final long timeoutMs;
+    private final long idleTimeoutMs;
+    private final long expectedLength;
+    private final int maxRetries;
+    private final long progressIntervalNanos;
+    private final Promise promise;
+
+    private final LinkedBlockingQueue<byte[]> input = new LinkedBlockingQueue<>();
+    // Owned by the dispatch thread.
+    private long offeredBytes = 0;
+    // Owned by the transfer thread.
+    private byte[] inputChunk;
+    private int inputPosition;
+    private final byte[] packet = new byte[1024 + 5];
+
+    private Thread thread;
+    private volatile String cancelReason;
+
+    private long bytes = 0;
+    private long totalBytes = -1;
+    private long blocks = 0;
+    private long retries = 0;
+    private String remoteName;
+    private long startedNanos;
+    // Throughput counts from the first to the last data, without waits for the other side.
+    private long dataStartedNanos;
+    private long dataEndedNanos;
+    private long lastProgressNanos;
+
+    FileTransfer(PortSession session, RNSerialportModule module, File file, int protocol, boolean sending, int chunkSize,
+                 long timeoutMs, long idleTimeoutMs, long expectedLength, int maxRetries, long progressIntervalMs, Promise promise) {
+        if (protocol < Definitions.FILE_TRANSFER_RAW || protocol > Definitions.FILE_TRANSFER_YMODEM) {
+            throw new IllegalArgumentException("unknown protocol " + protocol);
+        }
+        this.session = session;
+        this.module = module;
+        this.file = file;
+        this.protocol = protocol;
+        this.sending = sending;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.timeoutMs = Math.max(1, timeoutMs);
+        this.idleTimeoutMs = Math.max(1, idleTimeoutMs);
+        this.expectedLength = Math.max(0, expectedLength);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.progressIntervalNanos = Math.max(0, progressIntervalMs) * 1_000_000;
+        this.promise = promise;
+    }
+
+    synchronized void start() {
+        thread = new Thread(this::run, "RNSerialport-file-" + session.id);
+        thread.start();
+    }
+
+    /**
+     * Stops the transfer, which rejects its promise with reason.
+     */
+    synchronized void cancel(String reason) {
+        if (cancelReason == null) {
+            cancelReason = reason;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Called from the dispatch thread with read data.
+     *
+     * @return the part of data that is not for the transfer and goes on to the read pipeline,
+     *         or null if the transfer takes all of it
+     */
+    @Nullable
+    byte[] offer(byte[] data) {
+        if (protocol == Definitions.FILE_TRANSFER_RAW) {
+            if (sending) {
+                return data;
+            }
+            if (expectedLength > 0) {
+                long wanted = expectedLength - offeredBytes;
+                if (wanted <= 0) {
+                    return data;
+                }
+                if (data.length > wanted) {
+                    input.add(Arrays.copyOf(data, (int) wanted));
+                    offeredBytes = expectedLength;
+                    return Arrays.copyOfRange(data, (int) wanted, data.length);
+                }
+                offeredBytes += data.length;
+            }
+        }
+        input.add(data);
+        return null;
+    }
+
+    private void run() {
+        startedNanos = System.nanoTime();
+        try {
+            if (sending) {
+                totalBytes = file.length();
+                try (InputStream in = new FileInputStream(file)) {
+                    if (protocol == Definitions.FILE_TRANSFER_RAW) {
+                        sendRaw(in);
+                    } else {
+                        sendModem(in);
+                    }
+                }
+            } else {
+                totalBytes = expectedLength > 0 ? expectedLength : -1;
+                boolean received = false;
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+                    if (protocol == Definitions.FILE_TRANSFER_RAW) {
+                        receiveRaw(out);
+                    } else {
+                        receiveModem(out);
+                    }
+                    received = true;
+                } finally {
+                    if (!received) {
+                        file.delete();
+                    }
+                }
+            }
+            emitProgress(true);
+            promise.resolve(createResult());
+        } catch (InterruptedException err) {
+            abortRemote();
+            reject(cancelReason != null ? cancelReason : "cancelled");
+        } catch (IOException err) {
+            if (cancelReason == null) {
+                abortRemote();
+            }
+            reject(cancelReason != null ? cancelReason : err.getMessage());
+        } catch (RuntimeException err) {
+            // E.g. a SecurityException opening the file; the promise must settle anyway.
+            abortRemote();
+            reject(err.toString());
+        } finally {
+            session.onFileTransferFinished(this);
+        }
+    }
+
+    // === RAW ===
+    private void sendRaw(InputStream in) throws IOException, InterruptedException {
+        int size = Math.min(chunkSize, session.maxQueuedWriteBytes());
+        dataStartedNanos = System.nanoTime();
+        while (true) {
+            byte[] buffer = session.bufferPool.acquire(size);
+            int length = readFully(in, buffer, size);
+            if (length <= 0) {
+                session.bufferPool.release(buffer);
+                break;
+            }
+            transmit(buffer, length);
+            bytes += length;
+            blocks++;
+            emitProgress(false);
+        }
+        if (!session.awaitWritesDone(timeoutMs)) {
+            throw new IOException("write timed out");
+        }
+    }
+
+    private void receiveRaw(OutputStream out) throws IOException, InterruptedException {
+        // The first data may take timeoutMs, later gaps idleTimeoutMs.
+        long waitMs = timeoutMs;
+        while (expectedLength == 0 || bytes < expectedLength) {
+            byte[] chunk = input.poll(waitMs, TimeUnit.MILLISECONDS);
+            if (chunk == null) {
+                if (bytes == 0) {
+                    throw new IOException("no data within " + timeoutMs + " ms");
+                }
+                break;
+            }
+            dataEndedNanos = System.nanoTime();
+            if (dataStartedNanos == 0) {
+                dataStartedNanos = dataEndedNanos;
+            }
+            int length = expectedLength == 0 ? chunk.length : (int) Math.min(chunk.length, expectedLength - bytes);
+            out.write(chunk, 0, length);
+            bytes += length;
+            blocks++;
+            waitMs = idleTimeoutMs;
+            emitProgress(false);
+        }
+    }
+
+    // === XMODEM / YMODEM sender ===
+    private void sendModem(InputStream in) throws IOException, InterruptedException {
+        boolean crc = awaitStart();
+        dataStartedNanos = System.nanoTime();
+        int blockSize = protocol == Definitions.FILE_TRANSFER_XMODEM ? 128 : 1024;
+        if (protocol == Definitions.FILE_TRANSFER_YMODEM) {
+            byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] size = Long.toString(totalBytes).getBytes(StandardCharsets.US_ASCII);
+            byte[] header = new byte[name.length + size.length + 2 <= 128 ? 128 : 1024];
+            if (name.length + size.length + 2 > header.length) {
+                throw new IOException("file name too long");
+            }
+            System.arraycopy(name, 0, header, 0, name.length);
+            System.arraycopy(size, 0, header, name.length + 1, size.length);
+            sendBlock(0, header, header.length, crc);
+            crc = awaitStart();
+        }
+
+        byte[] data = new byte[blockSize];
+        int sequence = 1;
+        int length;
+        while ((length = readFully(in, data, blockSize)) > 0) {
+            // A short last block of a 1K transfer fits a 128 byte block.
+            int size = length <= 128 ? 128 : blockSize;
+            Arrays.fill(data, length, size, SUB);
+            sendBlock(sequence, data, size, crc);
+            sequence = (sequence + 1) & 0xFF;
+            bytes += length;
+            emitProgress(false);
+        }
+        sendEndOfFile();
+
+        if (protocol == Definitions.FILE_TRANSFER_YMODEM) {
+            // An empty header ends the batch.
+            crc = awaitStart();
+            sendBlock(0, new byte[128], 128, crc);
+        }
+    }
+
+    /**
+     * Waits for the receiver to ask for the first block.
+     *
+     * @return true if the receiver asked for CRC, false for the checksum
+     */
+    private boolean awaitStart() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * (maxRetries + 1) * 1_000_000;
+        while (true) {
+            int b = read(deadline);
+            if (b < 0) {
+                throw new IOException("receiver did not start");
+            }
+            if (b == CRC_REQUEST) {
+                return true;
+            }
+            if (b == NAK) {
+                return false;
+            }
+            checkCancel(b);
+        }
+    }
+
+    private void sendBlock(int sequence, byte[] data, int size, boolean crc) throws IOException, InterruptedException {
+        packet[0] = size == 128 ? SOH : STX;
+        packet[1] = (byte) sequence;
+        packet[2] = (byte) ~sequence;
+        System.arraycopy(data, 0, packet, 3, size);
+        int length = 3 + size;
+        if (crc) {
+            int value = FrameChecksum.crc16Ccitt(0, data, 0, size);
+            packet[length++] = (byte) (value >> 8);
+            packet[length++] = (byte) value;
+        } else {
+            packet[length++] = (byte) sum(data, size);
+        }
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                retries++;
+            }
+            byte[] buffer = session.bufferPool.acquire(length);
+            System.arraycopy(packet, 0, buffer, 0, length);
+            transmit(buffer, length);
+            if (awaitReply() == ACK) {
+                blocks++;
+                return;
+            }
+        }
+        throw new IOException("block " + sequence + " not acknowledged");
+    }
+
+    private void sendEndOfFile() throws IOException, InterruptedException {
+        // YMODEM receivers answer the first EOT with NAK by design; that is not a retry.
+        boolean expectNak = protocol == Definitions.FILE_TRANSFER_YMODEM;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            byte[] buffer = session.bufferPool.acquire(1);
+            buffer[0] = EOT;
+            transmit(buffer, 1);
+            int reply = awaitReply();
+            if (reply == ACK) {
+                return;
+            }
+            if (reply == NAK && expectNak) {
+                expectNak = false;
+                attempt--;
+            }
+        }
+        throw new IOException("end of file not acknowledged");
+    }
+
+    /**
+     * @return ACK, NAK, or -1 after timeoutMs without either
+     */
+    private int awaitReply() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (true) {
+            int b = read(deadline);
+            if (b < 0 || b == ACK || b == NAK) {
+                return b;
+            }
+            checkCancel(b);
+        }
+    }
+
+    // === XMODEM / YMODEM receiver ===
+    private void receiveModem(OutputStream out) throws IOException, InterruptedException {
+        long remaining = -1;
+        if (protocol == Definitions.FILE_TRANSFER_YMODEM) {
+            int length = receiveHeader();
+            remoteName = parseHeader(length);
+            if (remoteName.isEmpty()) {
+                // The sender has no file.
+                send(ACK);
+                return;
+            }
+            remaining = totalBytes;
+            send(ACK);
+        }
+
+        // XMODEM has no size, so the last block is held back to remove its padding.
+        byte[] held = new byte[1024];
+        int heldLength = 0;
+        int expected = 1;
+        boolean firstEot = true;
+        int failures = 0;
+        for (int length = requestFirstPacket(); ; length = readPacket(timeoutMs)) {
+            if (length == PACKET_TIMEOUT || length == PACKET_BAD) {
+                if (++failures > maxRetries) {
+                    throw new IOException(length == PACKET_TIMEOUT ? "sender timed out" : "too many bad blocks");
+                }
+                retries++;
+                if (length == PACKET_BAD) {
+                    discardInput();
+                }
+                send(NAK);
+                continue;
+            }
+            failures = 0;
+            if (length == PACKET_EOT) {
+                if (protocol == Definitions.FILE_TRANSFER_YMODEM && firstEot) {
+                    firstEot = false;
+                    send(NAK);
+                    continue;
+                }
+                send(ACK);
+                break;
+            }
+            int sequence = packet[1] & 0xFF;
+            if (sequence == ((expected - 1) & 0xFF)) {
+                // Our ACK got lost; the block is already written.
+                send(ACK);
+                continue;
+            }
+            if (sequence != expected) {
+                throw new IOException("expected block " + expected + ", got " + sequence);
+            }
+            if (remaining >= 0) {
+                int keep = (int) Math.min(length, remaining);
+                out.write(packet, 3, keep);
+                remaining -= keep;
+                bytes += keep;
+            } else {
+                out.write(held, 0, heldLength);
+                bytes += heldLength;
+                System.arraycopy(packet, 3, held, 0, length);
+                heldLength = length;
+            }
+            blocks++;
+            send(ACK);
+            expected = (expected + 1) & 0xFF;
+            emitProgress(false);
+        }
+        while (heldLength > 0 && held[heldLength - 1] == SUB) {
+            heldLength--;
+        }
+        out.write(held, 0, heldLength);
+        bytes += heldLength;
+
+        if (protocol == Definitions.FILE_TRANSFER_YMODEM) {
+            // Acknowledge the empty header ending the batch; the file is complete either way.
+            send(CRC_REQUEST);
+            if (readPacket(timeoutMs) > 0) {
+                send(ACK);
+            }
+        }
+    }
+
+    /**
+     * Reads the YMODEM header block into packet.
+     *
+     * @return the block length
+     */
+    private int receiveHeader() throws IOException, InterruptedException {
+        int length = requestFirstPacket();
+        if (length == PACKET_EOT || packet[1] != 0) {
+            throw new IOException("expected the YMODEM header");
+        }
+        return length;
+    }
+
+    /**
+     * Asks for CRC blocks every START_REQUEST_MS until the sender starts, as long as the
+     * sender may take to answer maxRetries + 1 times.
+     *
+     * @return the length of the first block, or PACKET_EOT for an empty file
+     */
+    private int requestFirstPacket() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * (maxRetries + 1) * 1_000_000;
+        while (System.nanoTime() < deadline) {
+            send(CRC_REQUEST);
+            int length = readPacket(Math.min(timeoutMs, START_REQUEST_MS));
+            if (length >= 0) {
+                if (dataStartedNanos == 0) {
+                    dataStartedNanos = System.nanoTime();
+                }
+                return length;
+            }
+            if (length == PACKET_BAD) {
+                retries++;
+                discardInput();
+            }
+        }
+        throw new IOException("sender did not start");
+    }
+
+    /**
+     * Reads the YMODEM header in packet: name, NUL, size in decimal and optional fields.
+     *
+     * @return the file name, empty at the end of a batch
+     */
+    private String parseHeader(int length) {
+        int end = 3;
+        while (end < 3 + length && packet[end] != 0) {
+            end++;
+        }
+        String name = new String(packet, 3, end - 3, StandardCharsets.UTF_8);
+        long size = 0;
+        boolean digits = false;
+        for (int i = end + 1; i < 3 + length && packet[i] >= '0' && packet[i] <= '9'; i++) {
+            size = size * 10 + (packet[i] - '0');
+            digits = true;
+        }
+        totalBytes = digits ? size : -1;
+        return name;
+    }
+
+    /**
+     * Reads one packet into packet, checking its sequence complement and CRC.
+     *
+     * @return the block length, PACKET_EOT, PACKET_TIMEOUT or PACKET_BAD
+     */
+    private int readPacket(long waitMs) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + waitMs * 1_000_000;
+        int size;
+        while (true) {
+            int b = read(deadline);
+            if (b < 0) {
+                return PACKET_TIMEOUT;
+            }
+            if (b == EOT) {
+                return PACKET_EOT;
+            }
+            if (b == SOH || b == STX) {
+                size = b == SOH ? 128 : 1024;
+                break;
+            }
+            checkCancel(b);
+        }
+        packet[0] = size == 128 ? SOH : STX;
+        for (int i = 1; i < size + 5; i++) {
+            int b = read(deadline);
+            if (b < 0) {
+                return PACKET_BAD;
+            }
+            packet[i] = (byte) b;
+        }
+        if ((packet[1] & 0xFF) != (~packet[2] & 0xFF)) {
+            return PACKET_BAD;
+        }
+        int value = ((packet[size + 3] & 0xFF) << 8) | (packet[size + 4] & 0xFF);
+        return value == FrameChecksum.crc16Ccitt(0, packet, 3, size) ? size : PACKET_BAD;
+    }
+
+    // === Helpers ===
+    /**
+     * Queues a pooled buffer on the writer, waiting up to timeoutMs for room.
+     */
+    private void transmit(byte[] buffer, int length) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (!session.send(buffer, length, true)) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+            if (!session.isConnected() || remainingMs <= 0 || !session.awaitWriteRoom(length, remainingMs)) {
+                session.bufferPool.release(buffer);
+                throw new IOException(session.isConnected() ? "write timed out" : "link closed");
+            }
+        }
+    }
+
+    private void send(byte b) throws IOException, InterruptedException {
+        byte[] buffer = session.bufferPool.acquire(1);
+        buffer[0] = b;
+        transmit(buffer, 1);
+    }
+
+    /**
+     * Tells the other side to stop with CAN CAN, without waiting for the writer.
+     */
+    private void abortRemote() {
+        if (protocol != Definitions.FILE_TRANSFER_RAW && session.isConnected()) {
+            session.send(new byte[] {CAN, CAN});
+        }
+    }
+
+    /**
+     * Aborts on a second CAN following b.
+     */
+    private void checkCancel(int b) throws IOException, InterruptedException {
+        if (b == CAN && read(System.nanoTime() + 1_000_000_000L) == CAN) {
+            throw new IOException("cancelled by the other side");
+        }
+    }
+
+    private void discardInput() {
+        input.clear();
+        inputChunk = null;
+    }
+
+    /**
+     * @return the next read byte, or -1 if none arrived before deadline
+     */
+    private int read(long deadlineNanos) throws InterruptedException {
+        while (inputChunk == null || inputPosition == inputChunk.length) {
+            long remaining = deadlineNanos - System.nanoTime();
+            inputChunk = remaining > 0 ? input.poll(remaining, TimeUnit.NANOSECONDS) : input.poll();
+            inputPosition = 0;
+            if (inputChunk == null) {
+                return -1;
+            }
+        }
+        return inputChunk[inputPosition++] & 0xFF;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int count = in.read(buffer, total, length - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static int sum(byte[] data, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += data[i] & 0xFF;
+        }
+        return sum & 0xFF;
+    }
+
+    private void emitProgress(boolean last) {
+        long now = System.nanoTime();
+        if (!last && now - lastProgressNanos < progressIntervalNanos) {
+            return;
+        }
+        lastProgressNanos = now;
+        WritableMap params = session.createParams();
+        params.putBoolean("sending", sending);
+        params.putDouble("bytes", bytes);
+        params.putDouble("totalBytes", totalBytes);
+        params.putDouble("bytesPerSecond", bytesPerSecond(now));
+        session.emit(module.onFileTransferProgressEvent, params);
+    }
+
+    private WritableMap createResult() {
+        long now = System.nanoTime();
+        WritableMap result = Arguments.createMap();
+        result.putDouble("bytes", bytes);
+        result.putDouble("blocks", blocks);
+        result.putDouble("retries", retries);
+        result.putDouble("durationMs", (now - startedNanos) / 1_000_000.0);
+        result.putDouble("bytesPerSecond", bytesPerSecond(now));
+        if (remoteName != null) {
+            result.putString("name", remoteName);
+        }
+        return result;
+    }
+
+    private double bytesPerSecond(long now) {
+        long elapsed = (dataEndedNanos != 0 ? dataEndedNanos : now) - dataStartedNanos;
+        return dataStartedNanos != 0 && elapsed > 0 ? bytes * 1e9 / elapsed : 0;
+    }
+
+    private void reject(String message) {
+        promise.reject(String.valueOf(Definitions.ERROR_FILE_TRANSFER_FAILED), Definitions.ERROR_FILE_TRANSFER_FAILED_MESSAGE + message);
+    }
+}
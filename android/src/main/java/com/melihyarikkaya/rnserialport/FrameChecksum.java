@@ -0,0 +1,171 @@
+package com.melihyarikkaya.rnserialport;
+
+import javax.annotation.Nullable;
+
+/**
+ * Checks the checksum at the end of a frame, for Definitions.CHECKSUM_*.
+ *
+ * A frame is laid out as startOffset bytes not covered by the checksum, the covered data,
+ * the checksum and endOffset trailing bytes, e.g. an STX before and an ETX after.
+ * CRCs are table driven, one lookup per byte:
+ *   XOR           xor of all bytes
+ *   LRC           two's complement of the byte sum
+ *   CRC-8         poly 0x07, init 0x00
+ *   CRC-16 MODBUS poly 0x8005 reflected, init 0xFFFF, sent low byte first
+ *   CRC-16 CCITT  poly 0x1021, init 0xFFFF (CCITT-FALSE), sent high byte first
+ *   CRC-32        poly 0x04C11DB7 reflected, init and xorout 0xFFFFFFFF, sent low byte first
+ */
+class FrameChecksum {
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_MODBUS_TABLE = new int[256];
+    private static final int[] CRC16_CCITT_TABLE = new int[256];
+    private static final int[] CRC32_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int modbus = i;
+            int ccitt = i << 8;
+            int crc32 = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                modbus = (modbus & 1) != 0 ? (modbus >>> 1) ^ 0xA001 : modbus >>> 1;
+                ccitt = (ccitt & 0x8000) != 0 ? (ccitt << 1) ^ 0x1021 : ccitt << 1;
+                crc32 = (crc32 & 1) != 0 ? (crc32 >>> 1) ^ 0xEDB88320 : crc32 >>> 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_MODBUS_TABLE[i] = modbus;
+            CRC16_CCITT_TABLE[i] = ccitt & 0xFFFF;
+            CRC32_TABLE[i] = crc32;
+        }
+    }
+
+    private final int type;
+    private final int width;
+    private final int startOffset;
+    private final int endOffset;
+    private final boolean littleEndian;
+    private final boolean strip;
+
+    FrameChecksum(int type, int startOffset, int endOffset, boolean littleEndian, boolean strip) {
+        if (width(type) == 0) {
+            throw new IllegalArgumentException("unknown checksum type " + type);
+        }
+        this.type = type;
+        this.width = width(type);
+        this.startOffset = Math.max(0, startOffset);
+        this.endOffset = Math.max(0, endOffset);
+        this.littleEndian = littleEndian;
+        this.strip = strip;
+    }
+
+    /**
+     * @return the byte order the protocol of the type normally sends its checksum in
+     */
+    static boolean defaultLittleEndian(int type) {
+        return type == Definitions.CHECKSUM_CRC16_MODBUS || type == Definitions.CHECKSUM_CRC32;
+    }
+
+    /**
+     * @return the checksum length in bytes, 0 for an unknown type
+     */
+    static int width(int type) {
+        switch (type) {
+            case Definitions.CHECKSUM_XOR:
+            case Definitions.CHECKSUM_LRC:
+            case Definitions.CHECKSUM_CRC8:
+                return 1;
+            case Definitions.CHECKSUM_CRC16_MODBUS:
+            case Definitions.CHECKSUM_CRC16_CCITT:
+                return 2;
+            case Definitions.CHECKSUM_CRC32:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * CRC-16 with poly 0x1021 from the given init value; init 0 is the XMODEM CRC.
+     */
+    static int crc16Ccitt(int init, byte[] data, int offset, int length) {
+        int crc = init;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = ((crc << 8) & 0xFFFF) ^ CRC16_CCITT_TABLE[((crc >>> 8) ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    static long compute(int type, byte[] data, int offset, int length) {
+        int end = offset + length;
+        switch (type) {
+            case Definitions.CHECKSUM_XOR: {
+                int xor = 0;
+                for (int i = offset; i < end; i++) {
+                    xor ^= data[i];
+                }
+                return xor & 0xFF;
+            }
+            case Definitions.CHECKSUM_LRC: {
+                int sum = 0;
+                for (int i = offset; i < end; i++) {
+                    sum += data[i];
+                }
+                return -sum & 0xFF;
+            }
+            case Definitions.CHECKSUM_CRC8: {
+                int crc = 0;
+                for (int i = offset; i < end; i++) {
+                    crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF];
+                }
+                return crc;
+            }
+            case Definitions.CHECKSUM_CRC16_MODBUS: {
+                int crc = 0xFFFF;
+                for (int i = offset; i < end; i++) {
+                    crc = (crc >>> 8) ^ CRC16_MODBUS_TABLE[(crc ^ data[i]) & 0xFF];
+                }
+                return crc;
+            }
+            case Definitions.CHECKSUM_CRC16_CCITT:
+                return crc16Ccitt(0xFFFF, data, offset, length);
+            case Definitions.CHECKSUM_CRC32: {
+                int crc = 0xFFFFFFFF;
+                for (int i = offset; i < end; i++) {
+                    crc = (crc >>> 8) ^ CRC32_TABLE[(crc ^ data[i]) & 0xFF];
+                }
+                return ~crc & 0xFFFFFFFFL;
+            }
+            default:
+                throw new IllegalArgumentException("unknown checksum type " + type);
+        }
+    }
+
+    /**
+     * @return the frame, without its checksum bytes if strip is set, or null if the
+     * checksum does not match or the frame is too short to hold one
+     */
+    @Nullable
+    byte[] check(byte[] frame) {
+        int checksumAt = frame.length - endOffset - width;
+        if (checksumAt < startOffset) {
+            return null;
+        }
+        long expected = 0;
+        for (int i = 0; i < width; i++) {
+            int b = frame[checksumAt + (littleEndian ? width - 1 - i : i)] & 0xFF;
+            expected = (expected << 8) | b;
+        }
+        if (compute(type, frame, startOffset, checksumAt - startOffset) != expected) {
+            return null;
+        }
+        if (!strip) {
+            return frame;
+        }
+        byte[] stripped = new byte[frame.length - width];
+        System.arraycopy(frame, 0, stripped, 0, checksumAt);
+        System.arraycopy(frame, checksumAt + width, stripped, checksumAt, endOffset);
+        return stripped;
+    }
+}
@@ -0,0 +1,23 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Splits the incoming byte stream into complete frames.
+ * Partial frames are kept between feed calls; only complete frames reach the sink.
+ */
+interface Framer {
+
+    interface Sink {
+        void onFrame(byte[] frame);
+    }
+
+    /**
+     * Framers keep per-stream state, so every port gets its own instance.
+     */
+    interface Factory {
+        Framer create();
+    }
+
+    void feed(byte[] data, int offset, int length, Sink sink);
+
+    void reset();
+}
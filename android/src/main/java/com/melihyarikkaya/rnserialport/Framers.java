@@ -0,0 +1,322 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Framer implementations for Definitions.FRAMING_*.
+ */
+class Framers {
+
+    private Framers() {}
+
+    /**
+     * Growable byte buffer holding the partial frame between callbacks.
+     * Frames longer than maxFrameLength are dropped so a missing delimiter can't grow it forever.
+     */
+    private static class Accumulator {
+        private final int maxFrameLength;
+        private byte[] data = new byte[256];
+        private int size = 0;
+
+        Accumulator(int maxFrameLength) {
+            this.maxFrameLength = maxFrameLength;
+        }
+
+        boolean append(byte b) {
+            if (size >= maxFrameLength) {
+                size = 0;
+                return false;
+            }
+            ensureCapacity(size + 1);
+            data[size++] = b;
+            return true;
+        }
+
+        void append(byte[] src, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(src, offset, data, size, length);
+            size += length;
+        }
+
+        byte[] take(int length) {
+            byte[] frame = new byte[length];
+            System.arraycopy(data, 0, frame, 0, length);
+            return frame;
+        }
+
+        void discard(int length) {
+            System.arraycopy(data, length, data, 0, size - length);
+            size -= length;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private void ensureCapacity(int required) {
+            if (data.length >= required) {
+                return;
+            }
+            byte[] grown = new byte[Math.max(required, data.length * 2)];
+            System.arraycopy(data, 0, grown, 0, size);
+            data = grown;
+        }
+    }
+
+    static class DelimiterFramer implements Framer {
+        private final byte[] delimiter;
+        private final boolean keepDelimiter;
+        private final Accumulator buffer;
+        private int scanFrom = 0;
+
+        DelimiterFramer(byte[] delimiter, boolean keepDelimiter, int maxFrameLength) {
+            this.delimiter = delimiter;
+            this.keepDelimiter = keepDelimiter;
+            this.buffer = new Accumulator(maxFrameLength);
+        }
+
+        @Override
+        public void feed(byte[] data, int offset, int length, Sink sink) {
+            buffer.append(data, offset, length);
+
+            int frameStart = 0;
+            int i = Math.max(scanFrom, delimiter.length - 1);
+            for (; i < buffer.size; i++) {
+                if (i - frameStart + 1 >= delimiter.length && endsWithDelimiter(i)) {
+                    int end = i + 1;
+                    int frameLength = end - frameStart - (keepDelimiter ? 0 : delimiter.length);
+                    byte[] frame = new byte[frameLength];
+                    System.arraycopy(buffer.data, frameStart, frame, 0, frameLength);
+                    sink.onFrame(frame);
+                    frameStart = end;
+                }
+            }
+
+            buffer.discard(frameStart);
+            if (buffer.size > buffer.maxFrameLength) {
+                buffer.clear();
+            }
+            scanFrom = buffer.size;
+        }
+
+        private boolean endsWithDelimiter(int last) {
+            int start = last - delimiter.length + 1;
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer.data[start + j] != delimiter[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+            scanFrom = 0;
+        }
+    }
+
+    static class FixedLengthFramer implements Framer {
+        private final int frameLength;
+        private final Accumulator buffer;
+
+        FixedLengthFramer(int frameLength) {
+            this.frameLength = frameLength;
+            this.buffer = new Accumulator(frameLength);
+        }
+
+        @Override
+        public void feed(byte[] data, int offset, int length, Sink sink) {
+            int end = offset + length;
+            while (offset < end) {
+                int count = Math.min(end - offset, frameLength - buffer.size);
+                buffer.append(data, offset, count);
+                offset += count;
+                if (buffer.size == frameLength) {
+                    sink.onFrame(buffer.take(frameLength));
+                    buffer.clear();
+                }
+            }
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Frame = [lengthOffset header bytes][lengthSize length field][body].
+     * The body is (length field value + lengthAdjust) bytes long. The whole frame is emitted.
+     */
+    static class LengthPrefixFramer implements Framer {
+        private final int lengthOffset;
+        private final int lengthSize;
+        private final boolean bigEndian;
+        private final int lengthAdjust;
+        private final Accumulator buffer;
+
+        LengthPrefixFramer(int lengthOffset, int lengthSize, boolean bigEndian, int lengthAdjust, int maxFrameLength) {
+            this.lengthOffset = lengthOffset;
+            this.lengthSize = lengthSize;
+            this.bigEndian = bigEndian;
+            this.lengthAdjust = lengthAdjust;
+            this.buffer = new Accumulator(maxFrameLength);
+        }
+
+        @Override
+        public void feed(byte[] data, int offset, int length, Sink sink) {
+            buffer.append(data, offset, length);
+
+            int headerLength = lengthOffset + lengthSize;
+            int frameStart = 0;
+            while (buffer.size - frameStart >= headerLength) {
+                long bodyLength = readLength(frameStart + lengthOffset) + lengthAdjust;
+                long frameLength = headerLength + bodyLength;
+                if (bodyLength < 0 || frameLength > buffer.maxFrameLength) {
+                    // Unusable length field, nothing to resync on: drop everything buffered.
+                    frameStart = buffer.size;
+                    break;
+                }
+                if (buffer.size - frameStart < frameLength) {
+                    break;
+                }
+                byte[] frame = new byte[(int) frameLength];
+                System.arraycopy(buffer.data, frameStart, frame, 0, frame.length);
+                sink.onFrame(frame);
+                frameStart += frame.length;
+            }
+            buffer.discard(frameStart);
+        }
+
+        private long readLength(int position) {
+            long value = 0;
+            for (int i = 0; i < lengthSize; i++) {
+                int b = buffer.data[position + (bigEndian ? i : lengthSize - 1 - i)] & 0xFF;
+                value = (value << 8) | b;
+            }
+            return value;
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * RFC 1055 SLIP decoder.
+     */
+    static class SlipFramer implements Framer {
+        private static final byte END = (byte) 0xC0;
+        private static final byte ESC = (byte) 0xDB;
+        private static final byte ESC_END = (byte) 0xDC;
+        private static final byte ESC_ESC = (byte) 0xDD;
+
+        private final Accumulator buffer;
+        private boolean escaped = false;
+        private boolean dropping = false;
+
+        SlipFramer(int maxFrameLength) {
+            this.buffer = new Accumulator(maxFrameLength);
+        }
+
+        @Override
+        public void feed(byte[] data, int offset, int length, Sink sink) {
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                byte b = data[i];
+                if (b == END) {
+                    if (buffer.size > 0 && !dropping) {
+                        sink.onFrame(buffer.take(buffer.size));
+                    }
+                    buffer.clear();
+                    escaped = false;
+                    dropping = false;
+                    continue;
+                }
+                if (dropping) {
+                    continue;
+                }
+                if (escaped) {
+                    escaped = false;
+                    if (b == ESC_END) {
+                        b = END;
+                    } else if (b == ESC_ESC) {
+                        b = ESC;
+                    }
+                } else if (b == ESC) {
+                    escaped = true;
+                    continue;
+                }
+                if (!buffer.append(b)) {
+                    dropping = true;
+                }
+            }
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+            escaped = false;
+            dropping = false;
+        }
+    }
+
+    /**
+     * COBS decoder for 0x00 delimited frames. Malformed frames are dropped.
+     */
+    static class CobsFramer implements Framer {
+        private final Accumulator buffer;
+        private boolean dropping = false;
+
+        CobsFramer(int maxFrameLength) {
+            this.buffer = new Accumulator(maxFrameLength);
+        }
+
+        @Override
+        public void feed(byte[] data, int offset, int length, Sink sink) {
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                byte b = data[i];
+                if (b == 0) {
+                    if (buffer.size > 0 && !dropping) {
+                        byte[] frame = decode(buffer.data, buffer.size);
+                        if (frame != null) {
+                            sink.onFrame(frame);
+                        }
+                    }
+                    buffer.clear();
+                    dropping = false;
+                } else if (!dropping && !buffer.append(b)) {
+                    dropping = true;
+                }
+            }
+        }
+
+        static byte[] decode(byte[] encoded, int length) {
+            byte[] decoded = new byte[length];
+            int out = 0;
+            int i = 0;
+            while (i < length) {
+                int code = encoded[i++] & 0xFF;
+                if (i + code - 1 > length) {
+                    return null;
+                }
+                for (int j = 1; j < code; j++) {
+                    decoded[out++] = encoded[i++];
+                }
+                if (code < 0xFF && i < length) {
+                    decoded[out++] = 0;
+                }
+            }
+            byte[] frame = new byte[out];
+            System.arraycopy(decoded, 0, frame, 0, out);
+            return frame;
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+            dropping = false;
+        }
+    }
+}
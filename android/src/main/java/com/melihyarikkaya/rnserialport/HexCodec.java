@@ -0,0 +1,137 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven hex encoder/decoder.
+ *
+ * Decoding accepts upper and lower case digits and skips whitespace and the separators
+ * ':', '-', ',' and '_', so "48 45:4c-4C" decodes the same as "48454C4C".
+ * Scratch buffers are kept per thread, so steady-state use only allocates the result.
+ */
+final class HexCodec {
+
+    private static final char[] DIGITS = Definitions.hexChars.toCharArray();
+
+    private static final byte INVALID = -1;
+    private static final byte SKIP = -2;
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, INVALID);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['A' + i] = (byte) (10 + i);
+            NIBBLES['a' + i] = (byte) (10 + i);
+        }
+        for (char c : new char[] {' ', '\t', '\r', '\n', ':', '-', ',', '_'}) {
+            NIBBLES[c] = SKIP;
+        }
+    }
+
+    private static final ThreadLocal<char[]> charScratch = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> byteScratch = new ThreadLocal<>();
+
+    private HexCodec() {}
+
+    static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+
+    static String encode(byte[] bytes, int offset, int length) {
+        char[] chars = charScratch(length * 2);
+        encode(bytes, offset, length, chars, 0);
+        return new String(chars, 0, length * 2);
+    }
+
+    static void encode(byte[] bytes, int offset, int length, char[] out, int outOffset) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int v = bytes[i] & 0xFF;
+            out[outOffset++] = DIGITS[v >>> 4];
+            out[outOffset++] = DIGITS[v & 0x0F];
+        }
+    }
+
+    /**
+     * Decodes hex into out, which needs room for hex.length() / 2 bytes.
+     * A trailing unpaired digit is ignored.
+     *
+     * @return the number of decoded bytes, or -1 if hex contains an invalid character
+     */
+    static int decode(CharSequence hex, byte[] out) {
+        int count = 0;
+        int high = -1;
+        for (int i = 0, n = hex.length(); i < n; i++) {
+            char c = hex.charAt(i);
+            int nibble = c < 128 ? NIBBLES[c] : INVALID;
+            if (nibble == SKIP) {
+                continue;
+            }
+            if (nibble == INVALID) {
+                return -1;
+            }
+            if (high < 0) {
+                high = nibble;
+            } else {
+                out[count++] = (byte) ((high << 4) | nibble);
+                high = -1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the decoded bytes, or null if hex contains an invalid character
+     */
+    static byte[] decode(CharSequence hex) {
+        byte[] scratch = byteScratch(hex.length() / 2);
+        int count = decode(hex, scratch);
+        if (count < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[count];
+        System.arraycopy(scratch, 0, bytes, 0, count);
+        return bytes;
+    }
+
+    /**
+     * Decodes hex into a string with one char per byte, stopping at the first 0x00 byte.
+     *
+     * @return the string, or null if hex contains an invalid character
+     */
+    static String decodeToUtf16(CharSequence hex) {
+        byte[] scratch = byteScratch(hex.length() / 2);
+        int count = decode(hex, scratch);
+        if (count < 0) {
+            return null;
+        }
+        char[] chars = charScratch(count);
+        int length = 0;
+        while (length < count && scratch[length] != 0) {
+            chars[length] = (char) (scratch[length] & 0xFF);
+            length++;
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static char[] charScratch(int length) {
+        char[] chars = charScratch.get();
+        if (chars == null || chars.length < length) {
+            chars = new char[Math.max(length, 256)];
+            charScratch.set(chars);
+        }
+        return chars;
+    }
+
+    private static byte[] byteScratch(int length) {
+        byte[] bytes = byteScratch.get();
+        if (bytes == null || bytes.length < length) {
+            bytes = new byte[Math.max(length, 256)];
+            byteScratch.set(bytes);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,147 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory transport for load testing the read and write pipeline without hardware.
+ *
+ * Written bytes come back as received data when echo is on. When generating, the reader
+ * thread also produces chunkSize byte chunks of a repeating pattern at bytesPerSecond,
+ * or as fast as the pipeline takes them when bytesPerSecond is 0.
+ * Everything is delivered from one reader thread, like a usb read loop.
+ */
+class LoopbackTransport implements SerialTransport {
+
+    private final String name;
+    private final boolean echo;
+    private final boolean generate;
+    private final long bytesPerSecond;
+    private final int chunkSize;
+    private final byte[] pattern;
+
+    private final LinkedBlockingQueue<byte[]> echoed = new LinkedBlockingQueue<>();
+
+    private volatile boolean running = false;
+    private Thread thread;
+    private int patternOffset = 0;
+
+    LoopbackTransport(String name, boolean echo, boolean generate, long bytesPerSecond, int chunkSize, byte[] pattern) {
+        this.name = name;
+        this.echo = echo;
+        this.generate = generate;
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pattern = pattern.length > 0 ? pattern : countingPattern();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean open() {
+        running = true;
+        return true;
+    }
+
+    @Override
+    public void setLineSettings(int baudRate, int dataBits, int stopBits, int parity, int flowControl) {}
+
+    @Override
+    public void write(byte[] data) {
+        if (echo && running) {
+            echoed.add(data.clone());
+        }
+    }
+
+    @Override
+    public synchronized void startReading(final ReadCallback callback, final int bufferSize) {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> run(callback, Math.max(1, bufferSize)), "RNSerialport-loopback-" + name);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Thread readerThread;
+        synchronized (this) {
+            readerThread = thread;
+            thread = null;
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+        echoed.clear();
+    }
+
+    private void run(ReadCallback callback, int bufferSize) {
+        long started = System.nanoTime();
+        long generatedBytes = 0;
+        try {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                long waitNanos;
+                if (!generate) {
+                    waitNanos = Long.MAX_VALUE;
+                } else if (bytesPerSecond == 0) {
+                    waitNanos = 0;
+                } else {
+                    long due = started + generatedBytes * 1_000_000_000L / bytesPerSecond;
+                    waitNanos = Math.max(0, due - System.nanoTime());
+                }
+
+                byte[] data = waitNanos == Long.MAX_VALUE
+                        ? echoed.take()
+                        : echoed.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (data != null) {
+                    deliver(callback, data, bufferSize);
+                    continue;
+                }
+
+                if (generate) {
+                    callback.onReceivedData(nextChunk());
+                    generatedBytes += chunkSize;
+                }
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Splits echoed data into reads of at most bufferSize bytes, like the usb read loop.
+     */
+    private static void deliver(ReadCallback callback, byte[] data, int bufferSize) {
+        if (data.length <= bufferSize) {
+            callback.onReceivedData(data);
+            return;
+        }
+        for (int offset = 0; offset < data.length; offset += bufferSize) {
+            int length = Math.min(bufferSize, data.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(data, offset, chunk, 0, length);
+            callback.onReceivedData(chunk);
+        }
+    }
+
+    private byte[] nextChunk() {
+        byte[] chunk = new byte[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            chunk[i] = pattern[patternOffset];
+            if (++patternOffset == pattern.length) {
+                patternOffset = 0;
+            }
+        }
+        return chunk;
+    }
+
+    private static byte[] countingPattern() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
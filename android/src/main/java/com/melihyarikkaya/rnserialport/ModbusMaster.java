@@ -0,0 +1,196 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modbus RTU master of one port, running on the port's transaction queue.
+ *
+ * Polls read a register or bit block at a fixed interval and emit an event only for the
+ * values that changed since the last read. A poll that is still waiting for its response
+ * skips its next tick, and a failing poll reports an error once until it recovers.
+ */
+class ModbusMaster {
+
+    interface Callback {
+        void onResponse(ModbusRtu.Response response, double elapsedMs);
+
+        void onError(int code, String message);
+    }
+
+    private static class Poll {
+        final int id;
+        final int slaveId;
+        final int functionCode;
+        final int address;
+        final int quantity;
+        final long timeoutMs;
+        final byte[] frame;
+
+        ScheduledFuture<?> future;
+        volatile boolean inFlight = false;
+        int[] lastValues;
+        boolean failing = false;
+
+        Poll(int id, int slaveId, int functionCode, int address, int quantity, long timeoutMs, byte[] frame) {
+            this.id = id;
+            this.slaveId = slaveId;
+            this.functionCode = functionCode;
+            this.address = address;
+            this.quantity = quantity;
+            this.timeoutMs = timeoutMs;
+            this.frame = frame;
+        }
+    }
+
+    private final PortSession session;
+    private final RNSerialportModule module;
+    private final Map<Integer, Poll> polls = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPollId = new AtomicInteger(1);
+    private ScheduledExecutorService scheduler;
+
+    ModbusMaster(PortSession session, RNSerialportModule module) {
+        this.session = session;
+        this.module = module;
+    }
+
+    /**
+     * Sends one request.
+     *
+     * @throws IllegalArgumentException if the request can't be encoded
+     */
+    void request(int slaveId, int functionCode, int address, int quantity, int[] values, long timeoutMs, Callback callback) {
+        byte[] frame = ModbusRtu.buildRequest(slaveId, functionCode, address, quantity, values);
+        submit(frame, slaveId, functionCode, quantity, timeoutMs, callback);
+    }
+
+    /**
+     * @return the poll id
+     * @throws IllegalArgumentException if the poll can't be encoded or isn't a read
+     */
+    synchronized int addPoll(int slaveId, int functionCode, int address, int quantity, long intervalMs, long timeoutMs) {
+        if (!ModbusRtu.isRead(functionCode)) {
+            throw new IllegalArgumentException("polls need a read function code");
+        }
+        if (intervalMs < 1) {
+            throw new IllegalArgumentException("intervalMs must be positive");
+        }
+        byte[] frame = ModbusRtu.buildRequest(slaveId, functionCode, address, quantity, null);
+        final Poll poll = new Poll(nextPollId.getAndIncrement(), slaveId, functionCode, address, quantity, timeoutMs, frame);
+        polls.put(poll.id, poll);
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+        }
+        poll.future = scheduler.scheduleAtFixedRate(() -> tick(poll), 0, intervalMs, TimeUnit.MILLISECONDS);
+        return poll.id;
+    }
+
+    synchronized boolean removePoll(int pollId) {
+        Poll poll = polls.remove(pollId);
+        if (poll == null) {
+            return false;
+        }
+        poll.future.cancel(false);
+        return true;
+    }
+
+    synchronized void close() {
+        polls.clear();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void tick(final Poll poll) {
+        if (poll.inFlight || !session.isConnected()) {
+            return;
+        }
+        poll.inFlight = true;
+        submit(poll.frame, poll.slaveId, poll.functionCode, poll.quantity, poll.timeoutMs, new Callback() {
+            @Override
+            public void onResponse(ModbusRtu.Response response, double elapsedMs) {
+                poll.inFlight = false;
+                poll.failing = false;
+                emitChanges(poll, response.values);
+            }
+
+            @Override
+            public void onError(int code, String message) {
+                poll.inFlight = false;
+                if (!poll.failing && polls.containsKey(poll.id)) {
+                    poll.failing = true;
+                    // Counted in the port stats already, so built without session.createError.
+                    WritableMap error = module.createError(code, message);
+                    error.putInt("portId", session.id);
+                    error.putInt("pollId", poll.id);
+                    session.emit(module.onErrorEvent, error);
+                }
+            }
+        });
+    }
+
+    private void emitChanges(Poll poll, int[] values) {
+        int[] last = poll.lastValues;
+        WritableArray changes = null;
+        for (int i = 0; i < values.length; i++) {
+            if (last != null && last[i] == values[i]) {
+                continue;
+            }
+            if (changes == null) {
+                changes = Arguments.createArray();
+            }
+            WritableMap change = Arguments.createMap();
+            change.putInt("address", poll.address + i);
+            change.putInt("value", values[i]);
+            changes.pushMap(change);
+        }
+        poll.lastValues = values;
+        if (changes == null || !polls.containsKey(poll.id)) {
+            return;
+        }
+
+        WritableMap params = session.createParams();
+        params.putInt("pollId", poll.id);
+        params.putInt("slaveId", poll.slaveId);
+        params.putInt("functionCode", poll.functionCode);
+        params.putArray("changes", changes);
+        session.emit(module.onModbusDataEvent, params);
+    }
+
+    private void submit(byte[] frame, final int slaveId, final int functionCode, final int quantity, long timeoutMs, final Callback callback) {
+        PortTransactions.Request request = new PortTransactions.Request(
+                frame, new byte[] {(byte) slaveId}, new byte[0], 0, Definitions.MODBUS_MAX_FRAME_LENGTH, timeoutMs,
+                new PortTransactions.Callback() {
+                    @Override
+                    public void onResponse(byte[] response, double elapsedMs) {
+                        try {
+                            callback.onResponse(ModbusRtu.parseResponse(response, slaveId, functionCode, quantity), elapsedMs);
+                        } catch (ModbusRtu.ModbusException err) {
+                            session.stats.onError(Definitions.ERROR_MODBUS_EXCEPTION);
+                            callback.onError(Definitions.ERROR_MODBUS_EXCEPTION, Definitions.ERROR_MODBUS_EXCEPTION_MESSAGE + err.code);
+                        } catch (IllegalArgumentException err) {
+                            session.stats.onError(Definitions.ERROR_MODBUS_INVALID_RESPONSE);
+                            callback.onError(Definitions.ERROR_MODBUS_INVALID_RESPONSE, Definitions.ERROR_MODBUS_INVALID_RESPONSE_MESSAGE + err.getMessage());
+                        }
+                    }
+
+                    @Override
+                    public void onError(int code, String message) {
+                        callback.onError(code, message);
+                    }
+                });
+        request.matcher = ModbusRtu::responseEnd;
+        request.silenceNanos = ModbusRtu.silenceNanos(session.settings.baudRate);
+        session.transact(request);
+    }
+}
@@ -0,0 +1,231 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Modbus RTU framing: CRC16, request frames and response parsing for function codes
+ * 1, 2, 3, 4, 5, 6, 15 and 16.
+ */
+final class ModbusRtu {
+
+    static final int READ_COILS               = 1;
+    static final int READ_DISCRETE_INPUTS     = 2;
+    static final int READ_HOLDING_REGISTERS   = 3;
+    static final int READ_INPUT_REGISTERS     = 4;
+    static final int WRITE_SINGLE_COIL        = 5;
+    static final int WRITE_SINGLE_REGISTER    = 6;
+    static final int WRITE_MULTIPLE_COILS     = 15;
+    static final int WRITE_MULTIPLE_REGISTERS = 16;
+
+    /**
+     * A decoded response. values holds bits as 0/1 or registers as unsigned 16 bit numbers;
+     * for write function codes it holds the written value (5, 6) or is empty (15, 16).
+     */
+    static class Response {
+        final int slaveId;
+        final int functionCode;
+        final int[] values;
+
+        Response(int slaveId, int functionCode, int[] values) {
+            this.slaveId = slaveId;
+            this.functionCode = functionCode;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Thrown for exception responses; code is the Modbus exception code.
+     */
+    static class ModbusException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        ModbusException(int code) {
+            super("exception code " + code);
+            this.code = code;
+        }
+    }
+
+    private ModbusRtu() {}
+
+    static int crc16(byte[] data, int offset, int length) {
+        return (int) FrameChecksum.compute(Definitions.CHECKSUM_CRC16_MODBUS, data, offset, length);
+    }
+
+    /**
+     * Minimum silence between frames: 3.5 character times of 11 bits, and a fixed
+     * 1.75 ms above 19200 baud as the spec recommends.
+     */
+    static long silenceNanos(int baudRate) {
+        if (baudRate <= 0 || baudRate > 19200) {
+            return 1_750_000L;
+        }
+        return 38_500_000_000L / baudRate;
+    }
+
+    static boolean isRead(int functionCode) {
+        return functionCode >= READ_COILS && functionCode <= READ_INPUT_REGISTERS;
+    }
+
+    /**
+     * Builds a request frame with its CRC.
+     *
+     * @param quantity number of bits or registers to read; ignored for writes
+     * @param values values to write; ignored for reads
+     */
+    static byte[] buildRequest(int slaveId, int functionCode, int address, int quantity, int[] values) {
+        if (slaveId < 1 || slaveId > 247) {
+            throw new IllegalArgumentException("slaveId must be 1-247");
+        }
+        if (address < 0 || address > 0xFFFF) {
+            throw new IllegalArgumentException("address must be 0-65535");
+        }
+        byte[] frame;
+        switch (functionCode) {
+            case READ_COILS:
+            case READ_DISCRETE_INPUTS:
+                checkQuantity(quantity, 2000);
+                frame = header(8, slaveId, functionCode, address, quantity);
+                break;
+            case READ_HOLDING_REGISTERS:
+            case READ_INPUT_REGISTERS:
+                checkQuantity(quantity, 125);
+                frame = header(8, slaveId, functionCode, address, quantity);
+                break;
+            case WRITE_SINGLE_COIL:
+                checkQuantity(values.length, 1);
+                frame = header(8, slaveId, functionCode, address, values[0] != 0 ? 0xFF00 : 0x0000);
+                break;
+            case WRITE_SINGLE_REGISTER:
+                checkQuantity(values.length, 1);
+                frame = header(8, slaveId, functionCode, address, values[0] & 0xFFFF);
+                break;
+            case WRITE_MULTIPLE_COILS: {
+                checkQuantity(values.length, 1968);
+                int byteCount = (values.length + 7) / 8;
+                frame = header(9 + byteCount, slaveId, functionCode, address, values.length);
+                frame[6] = (byte) byteCount;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != 0) {
+                        frame[7 + i / 8] |= (byte) (1 << (i % 8));
+                    }
+                }
+                break;
+            }
+            case WRITE_MULTIPLE_REGISTERS: {
+                checkQuantity(values.length, 123);
+                frame = header(9 + values.length * 2, slaveId, functionCode, address, values.length);
+                frame[6] = (byte) (values.length * 2);
+                for (int i = 0; i < values.length; i++) {
+                    frame[7 + i * 2] = (byte) (values[i] >> 8);
+                    frame[8 + i * 2] = (byte) values[i];
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unsupported function code " + functionCode);
+        }
+        int crc = crc16(frame, 0, frame.length - 2);
+        frame[frame.length - 2] = (byte) crc;
+        frame[frame.length - 1] = (byte) (crc >>> 8);
+        return frame;
+    }
+
+    /**
+     * Finds the end of a response frame that starts at offset 0, from its function code
+     * and byte count.
+     */
+    static int responseEnd(byte[] data, int length) {
+        if (length < 2) {
+            return -1;
+        }
+        int end;
+        int functionCode = data[1] & 0xFF;
+        if ((functionCode & 0x80) != 0) {
+            end = 5;
+        } else if (isRead(functionCode)) {
+            if (length < 3) {
+                return -1;
+            }
+            end = 5 + (data[2] & 0xFF);
+        } else {
+            end = 8;
+        }
+        return length >= end ? end : -1;
+    }
+
+    /**
+     * Checks and decodes a response frame to the given request.
+     *
+     * @throws ModbusException for exception responses
+     * @throws IllegalArgumentException for frames that fail the CRC or don't answer the request
+     */
+    static Response parseResponse(byte[] frame, int slaveId, int functionCode, int quantity) throws ModbusException {
+        if (frame.length < 5) {
+            throw new IllegalArgumentException("response too short");
+        }
+        int crc = crc16(frame, 0, frame.length - 2);
+        if ((frame[frame.length - 2] & 0xFF) != (crc & 0xFF) || (frame[frame.length - 1] & 0xFF) != (crc >>> 8)) {
+            throw new IllegalArgumentException("CRC mismatch");
+        }
+        if ((frame[0] & 0xFF) != slaveId) {
+            throw new IllegalArgumentException("response from slave " + (frame[0] & 0xFF));
+        }
+        int responseFunction = frame[1] & 0xFF;
+        if (responseFunction == (functionCode | 0x80)) {
+            throw new ModbusException(frame[2] & 0xFF);
+        }
+        if (responseFunction != functionCode) {
+            throw new IllegalArgumentException("response to function " + responseFunction);
+        }
+
+        int[] values;
+        switch (functionCode) {
+            case READ_COILS:
+            case READ_DISCRETE_INPUTS:
+                if ((frame[2] & 0xFF) < (quantity + 7) / 8) {
+                    throw new IllegalArgumentException("short bit response");
+                }
+                values = new int[quantity];
+                for (int i = 0; i < quantity; i++) {
+                    values[i] = (frame[3 + i / 8] >> (i % 8)) & 1;
+                }
+                break;
+            case READ_HOLDING_REGISTERS:
+            case READ_INPUT_REGISTERS:
+                if ((frame[2] & 0xFF) < quantity * 2) {
+                    throw new IllegalArgumentException("short register response");
+                }
+                values = new int[quantity];
+                for (int i = 0; i < quantity; i++) {
+                    values[i] = ((frame[3 + i * 2] & 0xFF) << 8) | (frame[4 + i * 2] & 0xFF);
+                }
+                break;
+            case WRITE_SINGLE_COIL:
+                values = new int[] {(frame[4] & 0xFF) == 0xFF ? 1 : 0};
+                break;
+            case WRITE_SINGLE_REGISTER:
+                values = new int[] {((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF)};
+                break;
+            default:
+                values = new int[0];
+        }
+        return new Response(slaveId, functionCode, values);
+    }
+
+    private static byte[] header(int frameLength, int slaveId, int functionCode, int address, int value) {
+        byte[] frame = new byte[frameLength];
+        frame[0] = (byte) slaveId;
+        frame[1] = (byte) functionCode;
+        frame[2] = (byte) (address >> 8);
+        frame[3] = (byte) address;
+        frame[4] = (byte) (value >> 8);
+        frame[5] = (byte) value;
+        return frame;
+    }
+
+    private static void checkQuantity(int quantity, int max) {
+        if (quantity < 1 || quantity > max) {
+            throw new IllegalArgumentException("quantity must be 1-" + max);
+        }
+    }
+}
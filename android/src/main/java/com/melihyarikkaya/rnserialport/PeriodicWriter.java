@@ -0,0 +1,157 @@
+package com.melihyarikkaya.rnserialport;
+
+import android.os.Process;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Periodic writes of one port, such as keep-alives and poll commands.
+ *
+ * Schedules run on the port's scheduler thread at display priority, timed in nanoseconds,
+ * and queue their bytes on the port's writer like any write, so they keep their order
+ * with other writes. Fixed rate schedules keep to start + n * period, fixed delay ones wait
+ * a period after each write. Jitter is how late a write was queued against that plan.
+ * A tick finding the port down or the write queue full is skipped and counted.
+ */
+class PeriodicWriter {
+
+    private static class Schedule {
+        final int id;
+        final byte[] data;
+        final long periodNanos;
+        final boolean fixedRate;
+
+        ScheduledFuture<?> future;
+        long firstDueNanos;
+        long lastTickNanos;
+
+        // Written by the scheduler thread only.
+        volatile long writes = 0;
+        volatile long skipped = 0;
+        volatile long jitterTotalNanos = 0;
+        volatile long jitterMaxNanos = 0;
+
+        Schedule(int id, byte[] data, long periodNanos, boolean fixedRate) {
+            this.id = id;
+            this.data = data;
+            this.periodNanos = periodNanos;
+            this.fixedRate = fixedRate;
+        }
+    }
+
+    private final PortSession session;
+    private final Map<Integer, Schedule> schedules = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private ScheduledExecutorService scheduler;
+
+    PeriodicWriter(PortSession session) {
+        this.session = session;
+    }
+
+    /**
+     * @return the schedule id
+     * @throws IllegalArgumentException if data is empty or the period is not positive
+     */
+    synchronized int schedule(byte[] data, double periodMs, double initialDelayMs, boolean fixedRate) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("data is empty");
+        }
+        long periodNanos = (long) (periodMs * 1_000_000);
+        if (periodNanos < 1) {
+            throw new IllegalArgumentException("periodMs must be positive");
+        }
+        long delayNanos = Math.max(0, (long) (initialDelayMs * 1_000_000));
+        final Schedule schedule = new Schedule(nextId.getAndIncrement(), data, periodNanos, fixedRate);
+        ScheduledExecutorService executor = scheduler();
+        Runnable task = () -> tick(schedule);
+        // Taken right before the executor plans its first run, so the plans match.
+        schedule.firstDueNanos = System.nanoTime() + delayNanos;
+        if (fixedRate) {
+            schedule.future = executor.scheduleAtFixedRate(task, delayNanos, periodNanos, TimeUnit.NANOSECONDS);
+        } else {
+            schedule.future = executor.scheduleWithFixedDelay(task, delayNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+        schedules.put(schedule.id, schedule);
+        return schedule.id;
+    }
+
+    synchronized boolean cancel(int id) {
+        Schedule schedule = schedules.remove(id);
+        if (schedule == null) {
+            return false;
+        }
+        schedule.future.cancel(false);
+        return true;
+    }
+
+    synchronized void close() {
+        schedules.clear();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    WritableArray getStats() {
+        WritableArray array = Arguments.createArray();
+        for (Schedule schedule : schedules.values()) {
+            long ticks = schedule.writes + schedule.skipped;
+            WritableMap map = Arguments.createMap();
+            map.putInt("id", schedule.id);
+            map.putDouble("periodMs", schedule.periodNanos / 1_000_000.0);
+            map.putBoolean("fixedRate", schedule.fixedRate);
+            map.putDouble("writes", schedule.writes);
+            map.putDouble("skipped", schedule.skipped);
+            map.putDouble("meanJitterMicros", ticks == 0 ? 0 : schedule.jitterTotalNanos / 1000.0 / ticks);
+            map.putDouble("maxJitterMicros", schedule.jitterMaxNanos / 1000.0);
+            array.pushMap(map);
+        }
+        return array;
+    }
+
+    private void tick(Schedule schedule) {
+        long now = System.nanoTime();
+        long ticks = schedule.writes + schedule.skipped;
+        long planned;
+        if (ticks == 0) {
+            planned = schedule.firstDueNanos;
+        } else if (schedule.fixedRate) {
+            planned = schedule.firstDueNanos + ticks * schedule.periodNanos;
+        } else {
+            planned = schedule.lastTickNanos + schedule.periodNanos;
+        }
+        long jitter = Math.max(0, now - planned);
+        schedule.jitterTotalNanos += jitter;
+        if (jitter > schedule.jitterMaxNanos) {
+            schedule.jitterMaxNanos = jitter;
+        }
+
+        if (session.isConnected() && session.send(schedule.data)) {
+            schedule.writes++;
+        } else {
+            schedule.skipped++;
+        }
+        schedule.lastTickNanos = System.nanoTime();
+    }
+
+    // Called with the lock held.
+    private ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                runnable.run();
+            }, "RNSerialport-periodic-" + session.id));
+        }
+        return scheduler;
+    }
+}
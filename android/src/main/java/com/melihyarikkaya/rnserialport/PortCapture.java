@@ -0,0 +1,195 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Records every chunk read from and written to a port into capture files.
+ *
+ * A file starts with the 8 byte magic "RNSPCAP1" and the capture start as 8 byte epoch
+ * milliseconds. Each record then holds the time since the capture start in nanoseconds
+ * (8 bytes), the direction (1 byte, 0 read and 1 write), the length (4 bytes) and the data,
+ * all big endian. The first file is path, then path.1, path.2 and so on as files reach
+ * maxFileBytes; with maxFiles set, the oldest files are deleted.
+ *
+ * Records are queued and written by the capture thread, so the usb callback only pays for
+ * an enqueue. Records that don't fit in maxQueuedBytes are dropped and counted.
+ */
+class PortCapture {
+
+    static final byte[] MAGIC = {'R', 'N', 'S', 'P', 'C', 'A', 'P', '1'};
+    static final int FILE_HEADER_LENGTH = 16;
+    static final int RECORD_HEADER_LENGTH = 13;
+
+    static final int DIRECTION_READ = 0;
+    static final int DIRECTION_WRITE = 1;
+
+    interface Listener {
+        void onCaptureFailed(PortCapture capture, IOException err);
+    }
+
+    private static class Record {
+        final long nanos;
+        final int direction;
+        final byte[] data;
+        @Nullable final Promise stopPromise;
+
+        Record(long nanos, int direction, byte[] data, @Nullable Promise stopPromise) {
+            this.nanos = nanos;
+            this.direction = direction;
+            this.data = data;
+            this.stopPromise = stopPromise;
+        }
+    }
+
+    private final String path;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final long maxQueuedBytes;
+    private final Listener listener;
+
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+
+    private final LinkedBlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    // Owned by the capture thread after start.
+    private final List<String> files = new ArrayList<>();
+    private final ArrayDeque<String> keptFiles = new ArrayDeque<>();
+    private DataOutputStream out;
+    private long fileBytes;
+    private long records = 0;
+    private long bytes = 0;
+
+    /**
+     * Creates the first file right away, so a bad path fails the call.
+     */
+    PortCapture(String path, long maxFileBytes, int maxFiles, long maxQueuedBytes, Listener listener) throws IOException {
+        this.path = path;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.listener = listener;
+        openFile(path);
+    }
+
+    void start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void record(int direction, byte[] data) {
+        if (stopped) {
+            return;
+        }
+        if (queuedBytes.addAndGet(data.length) > maxQueuedBytes) {
+            queuedBytes.addAndGet(-data.length);
+            droppedRecords.incrementAndGet();
+            droppedBytes.addAndGet(data.length);
+            return;
+        }
+        queue.add(new Record(System.nanoTime() - startNanos, direction, data, null));
+    }
+
+    /**
+     * Writes what is queued, closes the file and resolves the promise with the summary.
+     */
+    void stop(@Nullable Promise promise) {
+        stopped = true;
+        queue.add(new Record(0, 0, null, promise));
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Record record = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    out.flush();
+                    continue;
+                }
+                if (record.data == null) {
+                    out.close();
+                    if (record.stopPromise != null) {
+                        record.stopPromise.resolve(summary());
+                    }
+                    return;
+                }
+                queuedBytes.addAndGet(-record.data.length);
+                write(record);
+            }
+        } catch (IOException err) {
+            stopped = true;
+            queue.clear();
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            listener.onCaptureFailed(this, err);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Record record) throws IOException {
+        long length = RECORD_HEADER_LENGTH + record.data.length;
+        if (maxFileBytes > 0 && fileBytes > FILE_HEADER_LENGTH && fileBytes + length > maxFileBytes) {
+            out.close();
+            openFile(path + "." + files.size());
+        }
+        out.writeLong(record.nanos);
+        out.writeByte(record.direction);
+        out.writeInt(record.data.length);
+        out.write(record.data);
+        fileBytes += length;
+        records++;
+        bytes += record.data.length;
+    }
+
+    private void openFile(String filePath) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 64 * 1024));
+        out.write(MAGIC);
+        out.writeLong(startMillis);
+        fileBytes = FILE_HEADER_LENGTH;
+        files.add(filePath);
+        keptFiles.add(filePath);
+        while (maxFiles > 0 && keptFiles.size() > maxFiles) {
+            new File(keptFiles.poll()).delete();
+        }
+    }
+
+    private WritableMap summary() {
+        WritableArray paths = Arguments.createArray();
+        for (String file : keptFiles) {
+            paths.pushString(file);
+        }
+        WritableMap map = Arguments.createMap();
+        map.putArray("files", paths);
+        map.putDouble("records", records);
+        map.putDouble("bytes", bytes);
+        map.putDouble("droppedRecords", droppedRecords.get());
+        map.putDouble("droppedBytes", droppedBytes.get());
+        map.putDouble("durationMs", (System.nanoTime() - startNanos) / 1_000_000.0);
+        return map;
+    }
+}
@@ -0,0 +1,856 @@
+package com.melihyarikkaya.rnserialport;
+
+import android.os.Process;
+import android.util.Base64;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+/**
+ * One serial connection and its read pipeline, on top of a SerialTransport.
+ * Every port has its own settings, threads and buffers, so ports never wait on each other.
+ *
+ * Threads of a port: the transport's I/O thread only hands received chunks to the dispatch
+ * thread, which runs file transfers, transactions, telemetry, framing, conversion and
+ * events. Opening runs on the connection thread of the supervisor and writes on the writer
+ * thread.
+ */
+class PortSession {
+
+    final int id;
+    final PortSettings settings;
+
+    private final RNSerialportModule module;
+
+    volatile SerialTransport transport;
+    private volatile boolean connected = false;
+    final ConnectionSupervisor supervisor;
+
+    final PortStats stats = new PortStats();
+    final BufferPool bufferPool = new BufferPool(Definitions.BUFFER_POOL_BUFFERS_PER_CLASS);
+    private final ReadBufferSizer readBufferSizer = new ReadBufferSizer();
+    private volatile int readBufferSize = 0;
+
+    private final PortWriter writer;
+    private final PortTransactions transactions = new PortTransactions(this);
+    final ModbusMaster modbus;
+    final PeriodicWriter periodicWrites = new PeriodicWriter(this);
+
+    private final ReadCoalescer readCoalescer;
+    private final ReadDispatcher dispatcher;
+
+    private volatile PortCapture capture;
+    private volatile FileTransfer fileTransfer;
+
+    private volatile ReadRingBuffer readRingBuffer;
+    private ExecutorService pullReadExecutor;
+
+    private volatile DuplicateFilter duplicateFilter;
+    private volatile TextDecoder textDecoder;
+    private final List<String> pendingLines = new ArrayList<>();
+
+    private volatile TelemetryAggregator telemetry;
+
+    private volatile Framer framer;
+    private final List<byte[]> pendingFrames = new ArrayList<>();
+
+    PortSession(RNSerialportModule module, int id, SerialTransport transport, PortSettings settings) {
+        this.module = module;
+        this.id = id;
+        this.transport = transport;
+        this.settings = settings;
+
+        writer = new PortWriter("RNSerialport-writer-" + id, stats, bufferPool);
+        dispatcher = new ReadDispatcher("RNSerialport-dispatch-" + id, Definitions.DISPATCH_QUEUE_CHUNKS, this::dispatch);
+        modbus = new ModbusMaster(this, module);
+        supervisor = new ConnectionSupervisor(this, module);
+        readCoalescer = new ReadCoalescer(new ReadCoalescer.Sink() {
+            @Override
+            public void onFlush(byte[] data) {
+                emitReadData(data);
+            }
+        }, dispatcher::post);
+        writer.configure(settings.writeQueueBytes, settings.writeTransferSize);
+        readCoalescer.configure(settings.coalesceMaxBytes, settings.coalesceMaxDelayMs);
+        setFraming(settings.framerFactory, settings.batchFrames);
+        setDuplicateFilter(settings.duplicateFilter, settings.duplicateHeartbeatMs);
+        setTextDecoding(settings.textCharset, settings.textSplitLines, settings.textMaxLineLength);
+        setTelemetry(settings.telemetryLayout);
+        setReadRingBuffer(settings.ringCapacity, settings.ringOverflowPolicy);
+    }
+
+    String getName() {
+        return transport.getName();
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    // === Connection ===
+    void open() {
+        supervisor.connect();
+    }
+
+    /**
+     * Opens the transport and starts reading and writing.
+     * Called from the supervisor's connection thread.
+     *
+     * @return false if the transport could not be opened
+     */
+    boolean openLink() {
+        if (!transport.open()) {
+            transport.close();
+            return false;
+        }
+
+        connected = true;
+        ReadRingBuffer ring = readRingBuffer;
+        if (ring != null) {
+            ring.open();
+        }
+        applyLineSettings();
+        writer.start(this::transfer);
+        dispatcher.start();
+        readBufferSize = settings.readBufferSize > 0 ? settings.readBufferSize : readBufferSizer.sizeForOpen(settings.baudRate);
+        transport.startReading(mCallback, readBufferSize);
+        return true;
+    }
+
+    /**
+     * Closes the transport but keeps the pipeline, polls and capture for a reconnect.
+     * Pending writes and transactions are rejected, and a partial frame is dropped.
+     */
+    void closeLink() {
+        connected = false;
+        cancelFileTransfer("link closed");
+        transactions.abort();
+        writer.stop();
+        transport.close();
+        // Framers and the text decoder belong to the dispatch thread, which may still be on
+        // chunks read before the close; the reset runs there, after them.
+        dispatcher.post(this::resetPipeline);
+    }
+
+    private void resetPipeline() {
+        readCoalescer.flush();
+        Framer activeFramer = framer;
+        if (activeFramer != null) {
+            activeFramer.reset();
+        }
+        textDecoder.reset();
+        TelemetryAggregator activeTelemetry = telemetry;
+        if (activeTelemetry != null) {
+            activeTelemetry.reset();
+        }
+    }
+
+    /**
+     * Waits up to timeoutMs for the dispatch thread to process every received chunk.
+     */
+    void awaitDispatched(long timeoutMs) {
+        dispatcher.awaitIdle(timeoutMs);
+    }
+
+    /**
+     * Moves a port that waits for its device to the device's new attachment.
+     */
+    void replaceTransport(SerialTransport newTransport) {
+        transport = newTransport;
+    }
+
+    void close() {
+        supervisor.close();
+        stopCapture(null);
+        modbus.close();
+        periodicWrites.close();
+        cancelFileTransfer("port closed");
+        transactions.close();
+        writer.stop();
+        transport.close();
+        // Closed before draining: with PAUSE_READING a full ring holds the dispatch thread,
+        // which would otherwise wait out the whole drain timeout.
+        ReadRingBuffer ring = readRingBuffer;
+        if (ring != null) {
+            ring.close();
+        }
+        // Nothing is read any more; let the chunks received last reach the pipeline first.
+        dispatcher.awaitIdle(Definitions.DISPATCH_DRAIN_TIMEOUT_MS);
+        // Waits for the dispatch thread to end, so the pipeline can be reset from here.
+        dispatcher.stop();
+        readCoalescer.shutdown();
+        TelemetryAggregator activeTelemetry = telemetry;
+        if (activeTelemetry != null) {
+            activeTelemetry.close();
+        }
+        Framer activeFramer = framer;
+        if (activeFramer != null) {
+            activeFramer.reset();
+        }
+        synchronized (this) {
+            if (pullReadExecutor != null) {
+                pullReadExecutor.shutdownNow();
+                pullReadExecutor = null;
+            }
+        }
+        connected = false;
+    }
+
+    private void transfer(byte[] data) {
+        transport.write(data);
+        PortCapture activeCapture = capture;
+        if (activeCapture != null) {
+            // The writer reuses its transfer array.
+            activeCapture.record(PortCapture.DIRECTION_WRITE, data.clone());
+        }
+    }
+
+    // === Capture ===
+    /**
+     * Starts recording reads and writes, replacing a running capture.
+     *
+     * @throws IOException if the capture file can't be created
+     */
+    synchronized void startCapture(String path, long maxFileBytes, int maxFiles, long maxQueuedBytes) throws IOException {
+        stopCapture(null);
+        PortCapture started = new PortCapture(path, maxFileBytes, maxFiles, maxQueuedBytes, captureListener);
+        started.start("RNSerialport-capture-" + id);
+        capture = started;
+    }
+
+    /**
+     * @return false if there was no capture to stop
+     */
+    synchronized boolean stopCapture(@Nullable Promise promise) {
+        PortCapture activeCapture = capture;
+        if (activeCapture == null) {
+            return false;
+        }
+        capture = null;
+        activeCapture.stop(promise);
+        return true;
+    }
+
+    private final PortCapture.Listener captureListener = new PortCapture.Listener() {
+        @Override
+        public void onCaptureFailed(PortCapture failed, IOException err) {
+            synchronized (PortSession.this) {
+                if (capture == failed) {
+                    capture = null;
+                }
+            }
+            emit(module.onErrorEvent, createError(Definitions.ERROR_CAPTURE_FAILED, Definitions.ERROR_CAPTURE_FAILED_MESSAGE + err.getMessage()));
+        }
+    };
+
+    /**
+     * Pushes the line settings to an open port. Closed ports pick them up on open.
+     */
+    void applyLineSettings() {
+        if (!connected) {
+            return;
+        }
+        transport.setLineSettings(settings.baudRate, settings.dataBit, settings.stopBit, settings.parity, settings.flowControl);
+    }
+
+    // === Writing ===
+    void write(byte[] bytes, @Nullable Promise promise) {
+        write(bytes, bytes.length, false, promise);
+    }
+
+    /**
+     * Queues the first length bytes of buffer; a pooled buffer goes back to bufferPool
+     * once written or rejected.
+     */
+    void write(byte[] buffer, int length, boolean pooled, @Nullable Promise promise) {
+        int errorCode;
+        String errorMessage;
+        if (!connected) {
+            errorCode = Definitions.ERROR_THERE_IS_NO_CONNECTION;
+            errorMessage = Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE;
+        } else if (!writer.enqueue(buffer, length, pooled, promise)) {
+            errorCode = Definitions.ERROR_WRITE_QUEUE_FULL;
+            errorMessage = Definitions.ERROR_WRITE_QUEUE_FULL_MESSAGE;
+        } else {
+            return;
+        }
+        if (pooled) {
+            bufferPool.release(buffer);
+        }
+        emit(module.onErrorEvent, createError(errorCode, errorMessage));
+        if (promise != null) {
+            promise.reject(String.valueOf(errorCode), errorMessage);
+        }
+    }
+
+    // === Transactions ===
+    void transact(PortTransactions.Request request) {
+        transactions.submit(request);
+    }
+
+    /**
+     * Queues transaction request bytes without a promise; false when the write queue is full.
+     */
+    boolean send(byte[] data) {
+        return writer.enqueue(data, null);
+    }
+
+    /**
+     * Like send; a pooled buffer is released once written, but stays with the caller when
+     * this returns false.
+     */
+    boolean send(byte[] buffer, int length, boolean pooled) {
+        return writer.enqueue(buffer, length, pooled, null);
+    }
+
+    /**
+     * Waits up to timeoutMs for the write queue to have room for length more bytes.
+     */
+    boolean awaitWriteRoom(int length, long timeoutMs) throws InterruptedException {
+        return writer.awaitQueuedBytes(Math.max(0, writer.maxQueuedBytes() - length), timeoutMs);
+    }
+
+    /**
+     * Waits up to timeoutMs for every queued write to be handed to the driver.
+     */
+    boolean awaitWritesDone(long timeoutMs) throws InterruptedException {
+        return writer.awaitQueuedBytes(0, timeoutMs);
+    }
+
+    int maxQueuedWriteBytes() {
+        return writer.maxQueuedBytes();
+    }
+
+    // === File transfer ===
+    /**
+     * Starts a transfer unless one is running.
+     *
+     * @return false if another transfer is running
+     */
+    synchronized boolean startFileTransfer(FileTransfer transfer) {
+        if (fileTransfer != null) {
+            return false;
+        }
+        fileTransfer = transfer;
+        transfer.start();
+        return true;
+    }
+
+    /**
+     * Stops the running transfer, if any, rejecting its promise with reason.
+     */
+    synchronized boolean cancelFileTransfer(String reason) {
+        FileTransfer transfer = fileTransfer;
+        if (transfer == null) {
+            return false;
+        }
+        transfer.cancel(reason);
+        return true;
+    }
+
+    synchronized void onFileTransferFinished(FileTransfer transfer) {
+        if (fileTransfer == transfer) {
+            fileTransfer = null;
+        }
+    }
+
+    /**
+     * Resolves a transaction's promise with its response in the returned data type.
+     */
+    PortTransactions.Callback promiseCallback(final Promise promise) {
+        return new PortTransactions.Callback() {
+            @Override
+            public void onResponse(byte[] response, double elapsedMs) {
+                WritableMap params = createParams();
+                putPayload(params, response);
+                params.putDouble("elapsedMs", elapsedMs);
+                promise.resolve(params);
+            }
+
+            @Override
+            public void onError(int code, String message) {
+                promise.reject(String.valueOf(code), message);
+            }
+        };
+    }
+
+    void flush(Promise promise) {
+        if (!writer.flush(promise)) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+        }
+    }
+
+    void setWriteQueue(int maxQueuedBytes, int maxTransferSize) {
+        settings.writeQueueBytes = maxQueuedBytes;
+        settings.writeTransferSize = maxTransferSize;
+        writer.configure(maxQueuedBytes, maxTransferSize);
+    }
+
+    WritableMap getWriteQueueStatus() {
+        WritableMap map = createParams();
+        map.putInt("queuedWrites", writer.queuedWrites());
+        map.putDouble("queuedBytes", writer.queuedBytes());
+        map.putInt("maxQueuedBytes", writer.maxQueuedBytes());
+        map.putDouble("bytesWritten", writer.bytesWritten());
+        map.putDouble("writesCompleted", writer.writesCompleted());
+        map.putDouble("transfers", writer.transfers());
+        return map;
+    }
+
+    // === Stats ===
+    WritableMap getStats() {
+        WritableMap map = createParams();
+        map.putDouble("uptimeMs", System.currentTimeMillis() - stats.startedAtMillis);
+
+        long bytesRead = stats.bytesRead();
+        long chunksRead = stats.chunksRead();
+        map.putDouble("bytesRead", bytesRead);
+        map.putDouble("chunksRead", chunksRead);
+        map.putDouble("avgChunkSize", chunksRead == 0 ? 0 : (double) bytesRead / chunksRead);
+        map.putDouble("maxChunkSize", stats.maxChunkSize());
+        map.putDouble("bytesWritten", writer.bytesWritten());
+        map.putDouble("writesCompleted", writer.writesCompleted());
+        map.putDouble("transfers", writer.transfers());
+        map.putDouble("eventsEmitted", stats.eventsEmitted());
+        map.putInt("dispatchQueued", dispatcher.pending());
+        map.putDouble("dispatchFullWaits", dispatcher.fullWaits());
+        map.putInt("readBufferSize", readBufferSize);
+        map.putDouble("poolAcquired", bufferPool.acquired());
+        map.putDouble("poolAllocated", bufferPool.allocated());
+        map.putDouble("poolAllocatedBytes", bufferPool.allocatedBytes());
+        map.putDouble("suppressedFrames", stats.suppressedFrames());
+        map.putDouble("suppressedBytes", stats.suppressedBytes());
+        map.putDouble("invalidFrames", stats.invalidFrames());
+        map.putDouble("invalidBytes", stats.invalidBytes());
+
+        WritableArray errors = Arguments.createArray();
+        for (int code = 0; code <= PortStats.MAX_ERROR_CODE; code++) {
+            long count = stats.errors(code);
+            if (count > 0) {
+                WritableMap error = Arguments.createMap();
+                error.putInt("code", code);
+                error.putDouble("count", count);
+                errors.pushMap(error);
+            }
+        }
+        map.putArray("errors", errors);
+        map.putArray("periodicWrites", periodicWrites.getStats());
+
+        WritableMap latency = Arguments.createMap();
+        long latencyCount = stats.latencyCount();
+        latency.putDouble("count", latencyCount);
+        latency.putDouble("meanMicros", latencyCount == 0 ? 0 : stats.latencyTotalNanos() / 1000.0 / latencyCount);
+        latency.putDouble("maxMicros", stats.latencyMaxNanos() / 1000.0);
+        latency.putDouble("p50Micros", stats.latencyPercentileMicros(0.5));
+        latency.putDouble("p90Micros", stats.latencyPercentileMicros(0.9));
+        latency.putDouble("p99Micros", stats.latencyPercentileMicros(0.99));
+        WritableArray histogram = Arguments.createArray();
+        for (int i = 0; i < PortStats.LATENCY_BUCKETS; i++) {
+            long limit = PortStats.latencyBucketLimitMicros(i);
+            WritableMap bucket = Arguments.createMap();
+            bucket.putDouble("upperMicros", limit == Long.MAX_VALUE ? -1 : limit);
+            bucket.putDouble("count", stats.latencyBucket(i));
+            histogram.pushMap(bucket);
+        }
+        latency.putArray("histogram", histogram);
+        map.putMap("latency", latency);
+        return map;
+    }
+
+    // === Read pipeline settings ===
+    void setReadCoalescing(int maxBytes, long maxDelayMs) {
+        settings.coalesceMaxBytes = maxBytes;
+        settings.coalesceMaxDelayMs = maxDelayMs;
+        // Configuring flushes what is buffered, which emits; that belongs on the dispatch thread.
+        dispatcher.post(() -> readCoalescer.configure(maxBytes, maxDelayMs));
+    }
+
+    void setFraming(Framer.Factory factory, boolean batch) {
+        settings.framerFactory = factory;
+        settings.batchFrames = batch;
+        framer = factory == null ? null : factory.create();
+    }
+
+    void setFrameChecksum(@Nullable FrameChecksum checksum) {
+        settings.frameChecksum = checksum;
+    }
+
+    void setDuplicateFilter(boolean enabled, long heartbeatMs) {
+        settings.duplicateFilter = enabled;
+        settings.duplicateHeartbeatMs = heartbeatMs;
+        duplicateFilter = enabled ? new DuplicateFilter(heartbeatMs) : null;
+    }
+
+    void setTextDecoding(Charset charset, boolean splitLines, int maxLineLength) {
+        settings.textCharset = charset;
+        settings.textSplitLines = splitLines;
+        settings.textMaxLineLength = maxLineLength;
+        textDecoder = new TextDecoder(charset, splitLines, maxLineLength);
+    }
+
+    /**
+     * Parses read lines into telemetry windows instead of, or with passthrough besides,
+     * the read events. A null layout turns telemetry off.
+     */
+    synchronized void setTelemetry(@Nullable TelemetryAggregator.Layout layout) {
+        settings.telemetryLayout = layout;
+        TelemetryAggregator previous = telemetry;
+        if (previous != null) {
+            previous.close();
+        }
+        if (layout == null) {
+            telemetry = null;
+            return;
+        }
+        TelemetryAggregator next = new TelemetryAggregator(layout, summary -> {
+            summary.putInt("portId", id);
+            emit(module.onTelemetryEvent, summary);
+        }, "RNSerialport-telemetry-" + id);
+        next.start();
+        telemetry = next;
+    }
+
+    void setReadRingBuffer(int capacity, int overflowPolicy) {
+        settings.ringCapacity = capacity;
+        settings.ringOverflowPolicy = overflowPolicy;
+        ReadRingBuffer previous = readRingBuffer;
+        readRingBuffer = capacity >= 1 ? new ReadRingBuffer(capacity, overflowPolicy) : null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    // === Pull Reading ===
+    ReadRingBuffer getReadRingBuffer() {
+        return readRingBuffer;
+    }
+
+    void read(final int maxBytes, final long timeoutMs, final Promise promise) {
+        final ReadRingBuffer ring = readRingBuffer;
+        if (ring == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_READ_BUFFER_NOT_ENABLED), Definitions.ERROR_READ_BUFFER_NOT_ENABLED_MESSAGE);
+            return;
+        }
+        ExecutorService executor;
+        synchronized (this) {
+            if (pullReadExecutor == null) {
+                pullReadExecutor = Executors.newSingleThreadExecutor();
+            }
+            executor = pullReadExecutor;
+        }
+        executor.execute(() -> {
+            try {
+                byte[] bytes = ring.read(maxBytes, timeoutMs);
+                WritableMap params = createParams();
+                putPayload(params, bytes);
+                promise.resolve(params);
+            } catch (Exception err) {
+                promise.reject(String.valueOf(Definitions.ERROR_NOT_READED_DATA), Definitions.ERROR_NOT_READED_DATA_MESSAGE, err);
+            }
+        });
+    }
+
+    // === Events ===
+    WritableMap createParams() {
+        WritableMap params = Arguments.createMap();
+        params.putInt("portId", id);
+        return params;
+    }
+
+    WritableMap createError(int code, String message) {
+        stats.onError(code);
+        WritableMap map = module.createError(code, message);
+        map.putInt("portId", id);
+        return map;
+    }
+
+    void emit(String eventName, @Nullable WritableMap params) {
+        stats.onEventEmitted();
+        module.eventEmit(eventName, params);
+    }
+
+    private void emitReadEvent(WritableMap params) {
+        stats.onReadEventEmitted();
+        module.eventEmit(module.onReadDataFromPort, params);
+    }
+
+    private void emitReadData(byte[] bytes) {
+        try {
+            SharedReadBuffer sharedReadBuffer = module.getSharedReadBuffer();
+            if(settings.returnedDataType == Definitions.RETURNED_DATA_TYPE_SHARED_BUFFER && sharedReadBuffer != null) {
+                sharedReadBuffer.write(bytes, 0, bytes.length, sharedChunkSink);
+                return;
+            }
+            if(settings.returnedDataType == Definitions.RETURNED_DATA_TYPE_TEXT) {
+                emitText(bytes);
+                return;
+            }
+
+            WritableMap params = createParams();
+            if(!putPayload(params, bytes)) {
+                return;
+            }
+
+            emitReadEvent(params);
+
+        } catch (Exception err) {
+            emit(module.onErrorEvent, createError(Definitions.ERROR_NOT_READED_DATA, Definitions.ERROR_NOT_READED_DATA_MESSAGE + " System Message: " + err.getMessage()));
+        }
+    }
+
+    /**
+     * Emits all frames completed by one usb transfer as a single event with a "payloads" array.
+     * The shared buffer data type has no batched form, its frames are emitted one by one.
+     */
+    private void emitReadFrames(List<byte[]> frames) {
+        int returnedDataType = settings.returnedDataType;
+        if(frames.size() == 1 || returnedDataType == Definitions.RETURNED_DATA_TYPE_SHARED_BUFFER) {
+            for(byte[] frame: frames) {
+                emitReadData(frame);
+            }
+            return;
+        }
+        try {
+            WritableArray payloads = null;
+            for(byte[] frame: frames) {
+                if(payloads == null) {
+                    payloads = Arguments.createArray();
+                }
+                if(returnedDataType == Definitions.RETURNED_DATA_TYPE_INTARRAY) {
+                    payloads.pushArray(toIntArray(frame));
+                } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_HEXSTRING) {
+                    payloads.pushString(Definitions.bytesToHex(frame));
+                } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_BASE64) {
+                    payloads.pushString(Base64.encodeToString(frame, Base64.NO_WRAP));
+                } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_TEXT) {
+                    payloads.pushString(textDecoder.decode(frame));
+                }
+            }
+
+            WritableMap params = createParams();
+            params.putArray("payloads", payloads);
+            emitReadEvent(params);
+        } catch (Exception err) {
+            emit(module.onErrorEvent, createError(Definitions.ERROR_NOT_READED_DATA, Definitions.ERROR_NOT_READED_DATA_MESSAGE + " System Message: " + err.getMessage()));
+        }
+    }
+
+    /**
+     * Emits decoded text under "payload". With line splitting, each event carries one line,
+     * or all lines completed by the chunk under "payloads", like batched frames.
+     * Nothing is emitted while no character or line is complete.
+     */
+    private void emitText(byte[] bytes) {
+        TextDecoder decoder = textDecoder;
+        WritableMap params;
+        if(!decoder.splitsLines()) {
+            String text = decoder.decode(bytes);
+            if(text.isEmpty()) {
+                return;
+            }
+            params = createParams();
+            params.putString("payload", text);
+        } else {
+            decoder.decodeLines(bytes, pendingLines);
+            if(framer == null) {
+                removeDuplicateLines(pendingLines);
+            }
+            if(pendingLines.isEmpty()) {
+                return;
+            }
+            params = createParams();
+            if(pendingLines.size() == 1) {
+                params.putString("payload", pendingLines.get(0));
+            } else {
+                WritableArray payloads = Arguments.createArray();
+                for(String line: pendingLines) {
+                    payloads.pushString(line);
+                }
+                params.putArray("payloads", payloads);
+            }
+            pendingLines.clear();
+        }
+        emitReadEvent(params);
+    }
+
+    /**
+     * Without framing, decoded lines are the complete units the duplicate filter compares.
+     */
+    private void removeDuplicateLines(List<String> lines) {
+        if(duplicateFilter == null) {
+            return;
+        }
+        // In order, so each line is compared with the one emitted before it.
+        List<String> kept = new ArrayList<>(lines.size());
+        for(String line: lines) {
+            if(!isDuplicate(line.getBytes(StandardCharsets.UTF_8))) {
+                kept.add(line);
+            }
+        }
+        lines.clear();
+        lines.addAll(kept);
+    }
+
+    /**
+     * Only complete units are filtered: frames, or decoded lines without framing. Unframed
+     * chunks are split wherever the usb transfer ended, so they are never dropped.
+     */
+    private boolean isDuplicate(byte[] bytes) {
+        DuplicateFilter filter = duplicateFilter;
+        if(filter == null || !filter.suppress(bytes)) {
+            return false;
+        }
+        stats.onSuppressed(bytes.length);
+        return true;
+    }
+
+    /**
+     * Puts bytes under "payload" in the returned data type. The shared buffer type only
+     * applies to events, anything else asking for a payload gets base64 instead.
+     */
+    private boolean putPayload(WritableMap params, byte[] bytes) {
+        int returnedDataType = settings.returnedDataType;
+        if(returnedDataType == Definitions.RETURNED_DATA_TYPE_INTARRAY) {
+            params.putArray("payload", toIntArray(bytes));
+        } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_HEXSTRING) {
+            params.putString("payload", Definitions.bytesToHex(bytes));
+        } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_BASE64
+                || returnedDataType == Definitions.RETURNED_DATA_TYPE_SHARED_BUFFER) {
+            params.putString("payload", Base64.encodeToString(bytes, Base64.NO_WRAP));
+        } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_TEXT) {
+            // A response or pulled read is complete in itself, no stream state applies.
+            params.putString("payload", new String(bytes, settings.textCharset));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static WritableArray toIntArray(byte[] bytes) {
+        WritableArray intArray = new WritableNativeArray();
+        for(byte b: bytes) {
+            intArray.pushInt(UnsignedBytes.toInt(b));
+        }
+        return intArray;
+    }
+
+    private final SharedReadBuffer.Sink sharedChunkSink = new SharedReadBuffer.Sink() {
+        @Override
+        public void onChunk(int offset, int length, long cursor) {
+            WritableMap params = createParams();
+            params.putInt("offset", offset);
+            params.putInt("length", length);
+            params.putDouble("cursor", cursor);
+            emitReadEvent(params);
+        }
+    };
+
+    private final Framer.Sink frameSink = new Framer.Sink() {
+        @Override
+        public void onFrame(byte[] frame) {
+            FrameChecksum checksum = settings.frameChecksum;
+            if(checksum != null) {
+                byte[] valid = checksum.check(frame);
+                if(valid == null) {
+                    stats.onInvalidFrame(frame.length);
+                    return;
+                }
+                frame = valid;
+            }
+            if(isDuplicate(frame)) {
+                return;
+            }
+            if(settings.batchFrames) {
+                pendingFrames.add(frame);
+            } else {
+                emitReadData(frame);
+            }
+        }
+    };
+
+    /**
+     * Runs on the transport's I/O thread: records and hands over, nothing else.
+     */
+    private final SerialTransport.ReadCallback mCallback = new SerialTransport.ReadCallback() {
+        private Thread ioThread;
+
+        @Override
+        public void onReceivedData(byte[] data) {
+            if(Thread.currentThread() != ioThread) {
+                ioThread = Thread.currentThread();
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+            }
+
+            readBufferSizer.onRead(data.length);
+            PortCapture activeCapture = capture;
+            if(activeCapture != null) {
+                activeCapture.record(PortCapture.DIRECTION_READ, data);
+            }
+            dispatcher.offer(data);
+        }
+    };
+
+    /**
+     * Runs the read pipeline on the dispatch thread.
+     */
+    private void dispatch(byte[] data, long receivedNanos) {
+        byte[] received = data;
+        FileTransfer activeTransfer = fileTransfer;
+        if(activeTransfer != null) {
+            received = activeTransfer.offer(data);
+            if(received == null) {
+                stats.onChunkRead(data.length, false, receivedNanos);
+                return;
+            }
+        }
+
+        byte[] bytes = transactions.offer(received);
+        if(bytes == null) {
+            stats.onChunkRead(data.length, false, receivedNanos);
+            return;
+        }
+
+        TelemetryAggregator activeTelemetry = telemetry;
+        if(activeTelemetry != null) {
+            activeTelemetry.feed(bytes, 0, bytes.length);
+            if(!activeTelemetry.passthrough()) {
+                stats.onChunkRead(data.length, false, receivedNanos);
+                return;
+            }
+        }
+
+        ReadRingBuffer ring = readRingBuffer;
+        stats.onChunkRead(data.length, ring == null, receivedNanos);
+        if(ring != null) {
+            ring.write(bytes, 0, bytes.length);
+            return;
+        }
+
+        Framer activeFramer = framer;
+        if(activeFramer == null) {
+            readCoalescer.write(bytes);
+            return;
+        }
+
+        activeFramer.feed(bytes, 0, bytes.length, frameSink);
+        if(!pendingFrames.isEmpty()) {
+            emitReadFrames(pendingFrames);
+            pendingFrames.clear();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.felhr.usbserial.UsbSerialInterface;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Connection and read pipeline settings of one port.
+ * The module keeps one instance as the defaults new connections start from.
+ */
+class PortSettings {
+
+    volatile int dataBit     = UsbSerialInterface.DATA_BITS_8;
+    volatile int stopBit     = UsbSerialInterface.STOP_BITS_1;
+    volatile int parity      = UsbSerialInterface.PARITY_NONE;
+    volatile int flowControl = UsbSerialInterface.FLOW_CONTROL_OFF;
+    volatile int baudRate    = 9600;
+    volatile int readBufferSize = 16 * 1024;
+    volatile int portInterface = -1;
+    volatile String driver = "AUTO";
+    volatile int returnedDataType = Definitions.RETURNED_DATA_TYPE_INTARRAY;
+
+    volatile Charset textCharset = StandardCharsets.UTF_8;
+    volatile boolean textSplitLines = false;
+    volatile int textMaxLineLength = Definitions.DEFAULT_MAX_FRAME_LENGTH;
+
+    volatile int coalesceMaxBytes = 0;
+    volatile long coalesceMaxDelayMs = 0;
+
+    volatile Framer.Factory framerFactory;
+    volatile boolean batchFrames = false;
+    volatile FrameChecksum frameChecksum;
+
+    volatile TelemetryAggregator.Layout telemetryLayout;
+
+    volatile int writeQueueBytes = Definitions.DEFAULT_WRITE_QUEUE_BYTES;
+    volatile int writeTransferSize = Definitions.DEFAULT_WRITE_TRANSFER_SIZE;
+
+    volatile boolean duplicateFilter = false;
+    volatile long duplicateHeartbeatMs = 0;
+
+    volatile boolean autoReconnect = false;
+    volatile long reconnectInitialDelayMs = Definitions.DEFAULT_RECONNECT_INITIAL_DELAY_MS;
+    volatile long reconnectMaxDelayMs = Definitions.DEFAULT_RECONNECT_MAX_DELAY_MS;
+    volatile int reconnectMaxAttempts = 0;
+
+    volatile int ringCapacity = 0;
+    volatile int ringOverflowPolicy = Definitions.OVERFLOW_DROP_OLDEST;
+
+    void loadDefaultLineSettings() {
+        dataBit     = UsbSerialInterface.DATA_BITS_8;
+        stopBit     = UsbSerialInterface.STOP_BITS_1;
+        parity      = UsbSerialInterface.PARITY_NONE;
+        flowControl = UsbSerialInterface.FLOW_CONTROL_OFF;
+    }
+
+    PortSettings copy() {
+        PortSettings copy = new PortSettings();
+        copy.dataBit = dataBit;
+        copy.stopBit = stopBit;
+        copy.parity = parity;
+        copy.flowControl = flowControl;
+        copy.baudRate = baudRate;
+        copy.readBufferSize = readBufferSize;
+        copy.portInterface = portInterface;
+        copy.driver = driver;
+        copy.returnedDataType = returnedDataType;
+        copy.textCharset = textCharset;
+        copy.textSplitLines = textSplitLines;
+        copy.textMaxLineLength = textMaxLineLength;
+        copy.coalesceMaxBytes = coalesceMaxBytes;
+        copy.coalesceMaxDelayMs = coalesceMaxDelayMs;
+        copy.framerFactory = framerFactory;
+        copy.batchFrames = batchFrames;
+        copy.frameChecksum = frameChecksum;
+        copy.telemetryLayout = telemetryLayout;
+        copy.writeQueueBytes = writeQueueBytes;
+        copy.writeTransferSize = writeTransferSize;
+        copy.duplicateFilter = duplicateFilter;
+        copy.duplicateHeartbeatMs = duplicateHeartbeatMs;
+        copy.autoReconnect = autoReconnect;
+        copy.reconnectInitialDelayMs = reconnectInitialDelayMs;
+        copy.reconnectMaxDelayMs = reconnectMaxDelayMs;
+        copy.reconnectMaxAttempts = reconnectMaxAttempts;
+        copy.ringCapacity = ringCapacity;
+        copy.ringOverflowPolicy = ringOverflowPolicy;
+        return copy;
+    }
+}
@@ -0,0 +1,198 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime counters of one port.
+ * Every update is a single atomic operation, so the usb callback never waits on a reader.
+ * A snapshot taken while the port is busy may mix values from consecutive updates.
+ */
+class PortStats {
+
+    // Bucket i counts latencies below 2^i microseconds, the last bucket everything above.
+    static final int LATENCY_BUCKETS = 26;
+
+    // Error codes above 62 are counted together under 63.
+    static final int MAX_ERROR_CODE = 63;
+
+    final long startedAtMillis = System.currentTimeMillis();
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong chunksRead = new AtomicLong();
+    private final AtomicLong maxChunkSize = new AtomicLong();
+    private final AtomicLong eventsEmitted = new AtomicLong();
+    private final AtomicLong readEventsEmitted = new AtomicLong();
+    private final AtomicLong suppressedFrames = new AtomicLong();
+    private final AtomicLong suppressedBytes = new AtomicLong();
+    private final AtomicLong invalidFrames = new AtomicLong();
+    private final AtomicLong invalidBytes = new AtomicLong();
+
+    private final AtomicLongArray errors = new AtomicLongArray(MAX_ERROR_CODE + 1);
+
+    // Time of the oldest usb callback whose data has not reached an event yet, 0 when none.
+    private final AtomicLong pendingSinceNanos = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+    private final AtomicLong latencyCount = new AtomicLong();
+    private final AtomicLong latencyTotalNanos = new AtomicLong();
+    private final AtomicLong latencyMaxNanos = new AtomicLong();
+
+    /**
+     * @param receivedNanos when the usb callback handed the chunk over
+     */
+    void onChunkRead(int length, boolean emitsEvents, long receivedNanos) {
+        bytesRead.addAndGet(length);
+        chunksRead.incrementAndGet();
+        updateMax(maxChunkSize, length);
+        if (emitsEvents) {
+            pendingSinceNanos.compareAndSet(0, receivedNanos);
+        }
+    }
+
+    void onEventEmitted() {
+        eventsEmitted.incrementAndGet();
+    }
+
+    /**
+     * Records the latency of an event carrying read data, measured from the oldest usb
+     * callback it was waiting on. Further events built from the same callbacks are not timed.
+     */
+    void onReadEventEmitted() {
+        eventsEmitted.incrementAndGet();
+        readEventsEmitted.incrementAndGet();
+        long since = pendingSinceNanos.getAndSet(0);
+        if (since == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - since;
+        latencyBuckets.incrementAndGet(latencyBucket(nanos / 1000));
+        latencyCount.incrementAndGet();
+        latencyTotalNanos.addAndGet(nanos);
+        updateMax(latencyMaxNanos, nanos);
+    }
+
+    /**
+     * A suppressed frame also ends the wait of the data it carried, without timing it.
+     */
+    void onSuppressed(int length) {
+        suppressedFrames.incrementAndGet();
+        suppressedBytes.addAndGet(length);
+        pendingSinceNanos.set(0);
+    }
+
+    /**
+     * A frame failing its checksum ends the wait of its data like a suppressed one.
+     */
+    void onInvalidFrame(int length) {
+        invalidFrames.incrementAndGet();
+        invalidBytes.addAndGet(length);
+        pendingSinceNanos.set(0);
+    }
+
+    void onError(int code) {
+        errors.incrementAndGet(code >= 0 && code < MAX_ERROR_CODE ? code : MAX_ERROR_CODE);
+    }
+
+    long bytesRead() {
+        return bytesRead.get();
+    }
+
+    long chunksRead() {
+        return chunksRead.get();
+    }
+
+    long maxChunkSize() {
+        return maxChunkSize.get();
+    }
+
+    long eventsEmitted() {
+        return eventsEmitted.get();
+    }
+
+    long readEventsEmitted() {
+        return readEventsEmitted.get();
+    }
+
+    long suppressedFrames() {
+        return suppressedFrames.get();
+    }
+
+    long suppressedBytes() {
+        return suppressedBytes.get();
+    }
+
+    long invalidFrames() {
+        return invalidFrames.get();
+    }
+
+    long invalidBytes() {
+        return invalidBytes.get();
+    }
+
+    long errors(int code) {
+        return errors.get(code);
+    }
+
+    long latencyBucket(int bucket) {
+        return latencyBuckets.get(bucket);
+    }
+
+    long latencyCount() {
+        return latencyCount.get();
+    }
+
+    long latencyTotalNanos() {
+        return latencyTotalNanos.get();
+    }
+
+    long latencyMaxNanos() {
+        return latencyMaxNanos.get();
+    }
+
+    /**
+     * Upper bound in microseconds of a bucket, Long.MAX_VALUE for the last one.
+     */
+    static long latencyBucketLimitMicros(int bucket) {
+        return bucket < LATENCY_BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * Latency in microseconds below which the given fraction of the timed events fall,
+     * rounded up to a bucket limit but never above the max.
+     */
+    long latencyPercentileMicros(double fraction) {
+        long count = 0;
+        long[] buckets = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            buckets[i] = latencyBuckets.get(i);
+            count += buckets[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long maxMicros = latencyMaxNanos.get() / 1000;
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(latencyBucketLimitMicros(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    private static int latencyBucket(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+}
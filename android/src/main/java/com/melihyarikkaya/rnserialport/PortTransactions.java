@@ -0,0 +1,314 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request/response transactions of one port, run one at a time in submission order.
+ *
+ * While a transaction is active, received data goes to it instead of the read pipeline.
+ * A response is complete when the matcher says so, when it reaches the expected length,
+ * ends with the terminator, or, with none of them set, as soon as any data (starting with
+ * the prefix, if set) arrives. With a prefix, bytes before it are dropped. Bytes after
+ * the response go on to the read pipeline.
+ */
+class PortTransactions {
+
+    interface Callback {
+        void onResponse(byte[] response, double elapsedMs);
+
+        void onError(int code, String message);
+    }
+
+    interface Matcher {
+        /**
+         * @return the length of the complete response at the start of data, or -1 if incomplete
+         */
+        int responseEnd(byte[] data, int length);
+    }
+
+    static class Request {
+        final byte[] data;
+        final byte[] prefix;
+        final byte[] terminator;
+        final int responseLength;
+        final int maxResponseLength;
+        final long timeoutMs;
+        final Callback callback;
+
+        Matcher matcher;
+        // Minimum line silence between the previous transaction and this request.
+        long silenceNanos;
+
+        long startedNanos;
+        ScheduledFuture<?> timeout;
+
+        Request(byte[] data, byte[] prefix, byte[] terminator, int responseLength, int maxResponseLength, long timeoutMs, Callback callback) {
+            this.data = data;
+            this.prefix = prefix;
+            this.terminator = terminator;
+            this.responseLength = responseLength;
+            this.maxResponseLength = maxResponseLength;
+            this.timeoutMs = timeoutMs;
+            this.callback = callback;
+        }
+    }
+
+    private final PortSession session;
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+
+    private Request active;
+    private byte[] buffer = new byte[256];
+    private int buffered = 0;
+    private boolean closed = false;
+    private long lastFinishedNanos = 0;
+    private boolean startScheduled = false;
+    private ScheduledExecutorService timer;
+
+    PortTransactions(PortSession session) {
+        this.session = session;
+    }
+
+    void submit(Request request) {
+        List<Request> unsent = new ArrayList<>();
+        boolean queued = false;
+        synchronized (this) {
+            if (!closed) {
+                queue.add(request);
+                queued = true;
+                if (active == null) {
+                    startNext(unsent);
+                }
+            }
+        }
+        if (!queued) {
+            reject(request, Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+        }
+        rejectUnsent(unsent);
+    }
+
+    synchronized int pending() {
+        return queue.size() + (active == null ? 0 : 1);
+    }
+
+    /**
+     * Gives received data to the active transaction.
+     * Called from the port's dispatch thread only.
+     *
+     * @return the bytes the read pipeline should still get, or null if there are none
+     */
+    byte[] offer(byte[] data) {
+        List<Request> unsent = new ArrayList<>();
+        Request done;
+        byte[] response;
+        byte[] rest;
+        boolean overflow = false;
+        synchronized (this) {
+            if (active == null) {
+                return data;
+            }
+            append(data);
+            done = active;
+
+            if (done.prefix.length > 0) {
+                int start = indexOf(buffer, 0, buffered, done.prefix);
+                if (start < 0) {
+                    discard(Math.max(0, buffered - done.prefix.length + 1));
+                    return null;
+                }
+                discard(start);
+            }
+
+            int end = responseEnd(done);
+            if (end < 0) {
+                if (buffered <= done.maxResponseLength) {
+                    return null;
+                }
+                overflow = true;
+                end = buffered;
+            }
+
+            response = new byte[end];
+            System.arraycopy(buffer, 0, response, 0, end);
+            rest = new byte[buffered - end];
+            System.arraycopy(buffer, end, rest, 0, rest.length);
+
+            finishActive();
+            startNext(unsent);
+        }
+
+        if (overflow) {
+            reject(done, Definitions.ERROR_TRANSACTION_OVERFLOW, Definitions.ERROR_TRANSACTION_OVERFLOW_MESSAGE);
+        } else {
+            done.callback.onResponse(response, (System.nanoTime() - done.startedNanos) / 1_000_000.0);
+        }
+        rejectUnsent(unsent);
+        return rest.length > 0 ? rest : null;
+    }
+
+    /**
+     * Rejects the active and queued transactions for good.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        abort();
+    }
+
+    /**
+     * Rejects the active and queued transactions; later ones still run.
+     */
+    void abort() {
+        List<Request> pending = new ArrayList<>();
+        synchronized (this) {
+            startScheduled = false;
+            if (active != null) {
+                pending.add(active);
+                finishActive();
+            }
+            pending.addAll(queue);
+            queue.clear();
+            if (timer != null) {
+                timer.shutdownNow();
+                timer = null;
+            }
+        }
+        for (Request request : pending) {
+            reject(request, Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+        }
+    }
+
+    /**
+     * Sends queued requests until one is active. Requests the writer refused are added to
+     * unsent; the caller rejects them with rejectUnsent once it released the lock.
+     * Called with the lock held.
+     */
+    private void startNext(List<Request> unsent) {
+        while (active == null && !queue.isEmpty()) {
+            long waitNanos = lastFinishedNanos + queue.peek().silenceNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                if (!startScheduled) {
+                    startScheduled = true;
+                    timer().schedule(this::startDeferred, waitNanos, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            final Request request = queue.poll();
+            buffered = 0;
+            if (!session.send(request.data)) {
+                unsent.add(request);
+                continue;
+            }
+            active = request;
+            request.startedNanos = System.nanoTime();
+            request.timeout = timer().schedule(() -> onTimeout(request), request.timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void startDeferred() {
+        List<Request> unsent = new ArrayList<>();
+        synchronized (this) {
+            startScheduled = false;
+            if (!closed && active == null) {
+                startNext(unsent);
+            }
+        }
+        rejectUnsent(unsent);
+    }
+
+    // Called with the lock held.
+    private void finishActive() {
+        if (active.timeout != null) {
+            active.timeout.cancel(false);
+        }
+        active = null;
+        buffered = 0;
+        lastFinishedNanos = System.nanoTime();
+    }
+
+    private void onTimeout(Request request) {
+        List<Request> unsent = new ArrayList<>();
+        synchronized (this) {
+            if (active != request) {
+                return;
+            }
+            finishActive();
+            startNext(unsent);
+        }
+        reject(request, Definitions.ERROR_TRANSACTION_TIMEOUT, Definitions.ERROR_TRANSACTION_TIMEOUT_MESSAGE);
+        rejectUnsent(unsent);
+    }
+
+    private void rejectUnsent(List<Request> unsent) {
+        for (Request request : unsent) {
+            reject(request, Definitions.ERROR_WRITE_QUEUE_FULL, Definitions.ERROR_WRITE_QUEUE_FULL_MESSAGE);
+        }
+    }
+
+    private void reject(Request request, int code, String message) {
+        session.stats.onError(code);
+        request.callback.onError(code, message);
+    }
+
+    /**
+     * @return the end of a complete response at the start of the buffer, or -1
+     */
+    private int responseEnd(Request request) {
+        if (request.matcher != null) {
+            return request.matcher.responseEnd(buffer, buffered);
+        }
+        if (request.responseLength > 0) {
+            return buffered >= request.responseLength ? request.responseLength : -1;
+        }
+        if (request.terminator.length > 0) {
+            int from = request.prefix.length;
+            int index = indexOf(buffer, from, buffered, request.terminator);
+            return index < 0 ? -1 : index + request.terminator.length;
+        }
+        return buffered > 0 ? buffered : -1;
+    }
+
+    private void append(byte[] data) {
+        if (buffered + data.length > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, buffered + data.length)];
+            System.arraycopy(buffer, 0, grown, 0, buffered);
+            buffer = grown;
+        }
+        System.arraycopy(data, 0, buffer, buffered, data.length);
+        buffered += data.length;
+    }
+
+    private void discard(int count) {
+        if (count <= 0) {
+            return;
+        }
+        System.arraycopy(buffer, count, buffer, 0, buffered - count);
+        buffered -= count;
+    }
+
+    private ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor();
+        }
+        return timer;
+    }
+
+    private static int indexOf(byte[] data, int from, int to, byte[] pattern) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
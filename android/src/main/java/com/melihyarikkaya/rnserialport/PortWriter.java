@@ -0,0 +1,280 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.Promise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Ordered write queue of one port, drained by a dedicated writer thread.
+ * Consecutive queued writes are merged into one transfer of up to maxTransferSize bytes.
+ * A write's promise resolves with its byte count once the bytes are handed to the driver.
+ *
+ * Writes may come in pooled buffers longer than their data, which go back to the pool once
+ * transferred. Merged transfers reuse one array while their size repeats, so steady
+ * streaming of same sized writes allocates nothing; the output must not keep the array.
+ */
+class PortWriter {
+
+    interface Output {
+        void write(byte[] data);
+    }
+
+    private static class Request {
+        final byte[] data;
+        final int length;
+        final boolean pooled;
+        @Nullable final Promise promise;
+
+        Request(byte[] data, int length, boolean pooled, @Nullable Promise promise) {
+            this.data = data;
+            this.length = length;
+            this.pooled = pooled;
+            this.promise = promise;
+        }
+    }
+
+    private final String name;
+    private final PortStats stats;
+    private final BufferPool pool;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    private volatile int maxQueuedBytes = Definitions.DEFAULT_WRITE_QUEUE_BYTES;
+    private volatile int maxTransferSize = Definitions.DEFAULT_WRITE_TRANSFER_SIZE;
+
+    private long queuedBytes = 0;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writesCompleted = new AtomicLong();
+    private final AtomicLong transfers = new AtomicLong();
+
+    private Thread thread;
+
+    PortWriter(String name, PortStats stats, BufferPool pool) {
+        this.name = name;
+        this.stats = stats;
+        this.pool = pool;
+    }
+
+    void configure(int maxQueuedBytes, int maxTransferSize) {
+        if (maxQueuedBytes > 0) {
+            this.maxQueuedBytes = maxQueuedBytes;
+        }
+        if (maxTransferSize > 0) {
+            this.maxTransferSize = maxTransferSize;
+        }
+    }
+
+    synchronized void start(final Output output) {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> drain(output), name);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread, waiting up to Definitions.THREAD_STOP_TIMEOUT_MS for its
+     * transfer in progress, and rejects everything still queued.
+     */
+    void stop() {
+        Thread writerThread;
+        synchronized (this) {
+            writerThread = thread;
+            thread = null;
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+            if (writerThread != Thread.currentThread()) {
+                try {
+                    writerThread.join(Definitions.THREAD_STOP_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        synchronized (this) {
+            queuedBytes = 0;
+            notifyAll();
+        }
+        for (Request request : pending) {
+            recycle(request);
+            reject(request.promise);
+        }
+    }
+
+    /**
+     * Returns false without queueing when the queue can't take data.length more bytes.
+     */
+    boolean enqueue(byte[] data, @Nullable Promise promise) {
+        return enqueue(data, data.length, false, promise);
+    }
+
+    /**
+     * Queues the first length bytes of data; a pooled buffer is released once transferred,
+     * but stays with the caller when this returns false.
+     */
+    boolean enqueue(byte[] data, int length, boolean pooled, @Nullable Promise promise) {
+        // Added under the lock, so stop() either refuses the request or drains and rejects it.
+        synchronized (this) {
+            if (thread == null || queuedBytes + length > maxQueuedBytes) {
+                return false;
+            }
+            queuedBytes += length;
+            queue.add(new Request(data, length, pooled, promise));
+        }
+        return true;
+    }
+
+    /**
+     * Resolves once every write queued before it was handed to the driver.
+     */
+    boolean flush(Promise promise) {
+        return enqueue(new byte[0], promise);
+    }
+
+    /**
+     * Waits until at most maxBytes are queued; 0 waits for every queued write to be handed
+     * to the driver.
+     *
+     * @return false if the writer stopped or timeoutMs passed first
+     */
+    synchronized boolean awaitQueuedBytes(long maxBytes, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (thread != null && queuedBytes > maxBytes) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            wait(remainingMs);
+        }
+        return thread != null;
+    }
+
+    synchronized long queuedBytes() {
+        return queuedBytes;
+    }
+
+    int queuedWrites() {
+        return queue.size();
+    }
+
+    int maxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    long writesCompleted() {
+        return writesCompleted.get();
+    }
+
+    long transfers() {
+        return transfers.get();
+    }
+
+    /**
+     * @return false once stop() replaced or removed this thread
+     */
+    private synchronized boolean isCurrent(Thread writerThread) {
+        return thread == writerThread;
+    }
+
+    private void drain(Output output) {
+        Thread self = Thread.currentThread();
+        List<Request> batch = new ArrayList<>();
+        // Reused while the transfer size repeats; local, so a thread that outlived stop()
+        // never shares it with the next one.
+        byte[] transferBuffer = new byte[0];
+        while (!self.isInterrupted() && isCurrent(self)) {
+            Request first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            batch.add(first);
+            int size = first.length;
+            Request next;
+            while (size < maxTransferSize && (next = queue.peek()) != null && size + next.length <= maxTransferSize) {
+                batch.add(queue.poll());
+                size += next.length;
+            }
+
+            try {
+                if (size > 0) {
+                    byte[] transfer = merge(batch, size, transferBuffer);
+                    if (transfer != batch.get(0).data) {
+                        transferBuffer = transfer;
+                    }
+                    output.write(transfer);
+                    transfers.incrementAndGet();
+                }
+                bytesWritten.addAndGet(size);
+                for (Request request : batch) {
+                    if (request.promise != null) {
+                        request.promise.resolve(request.length);
+                    }
+                }
+            } catch (Exception err) {
+                stats.onError(Definitions.ERROR_WRITE_FAILED);
+                for (Request request : batch) {
+                    if (request.promise != null) {
+                        request.promise.reject(String.valueOf(Definitions.ERROR_WRITE_FAILED), Definitions.ERROR_WRITE_FAILED_MESSAGE, err);
+                    }
+                }
+            }
+
+            for (Request request : batch) {
+                recycle(request);
+            }
+            writesCompleted.addAndGet(batch.size());
+            synchronized (this) {
+                // After a stop() the count belongs to the next writer thread.
+                if (thread == self) {
+                    queuedBytes = Math.max(0, queuedBytes - size);
+                }
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return the single request's own array, or reuse (or a new array when its size differs)
+     *         filled with the batch
+     */
+    private static byte[] merge(List<Request> batch, int size, byte[] reuse) {
+        Request first = batch.get(0);
+        if (batch.size() == 1 && first.data.length == size) {
+            return first.data;
+        }
+        byte[] transfer = reuse.length == size ? reuse : new byte[size];
+        int offset = 0;
+        for (Request request : batch) {
+            System.arraycopy(request.data, 0, transfer, offset, request.length);
+            offset += request.length;
+        }
+        return transfer;
+    }
+
+    private void recycle(Request request) {
+        if (request.pooled) {
+            pool.release(request.data);
+        }
+    }
+
+    private static void reject(@Nullable Promise promise) {
+        if (promise != null) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+        }
+    }
+}
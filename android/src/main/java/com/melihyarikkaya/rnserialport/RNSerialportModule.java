@@ -6,31 +6,35 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
-import android.util.Base64;
+import android.os.Debug;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeArray;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.LifecycleEventListener;
 
-import com.google.common.primitives.UnsignedBytes;
-
 import android.hardware.usb.UsbDevice;
-import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbManager;
 
 import com.felhr.usbserial.UsbSerialDevice;
-import com.felhr.usbserial.UsbSerialInterface;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -51,42 +55,48 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
     private final String ACTION_USB_CONNECT = "com.melihyarikkaya.rnserialport.USB_CONNECT";
 
     //react-native events
-    private final String onErrorEvent              = "onError";
-    private final String onConnectedEvent          = "onConnected";
-    private final String onDisconnectedEvent       = "onDisconnected";
-    private final String onDeviceAttachedEvent     = "onDeviceAttached";
-    private final String onDeviceDetachedEvent     = "onDeviceDetached";
-    private final String onServiceStarted          = "onServiceStarted";
-    private final String onServiceStopped          = "onServiceStopped";
-    private final String onReadDataFromPort        = "onReadDataFromPort";
-    private final String onUsbPermissionGranted    = "onUsbPermissionGranted";
+    final String onErrorEvent              = "onError";
+    final String onConnectedEvent          = "onConnected";
+    final String onDisconnectedEvent       = "onDisconnected";
+    final String onDeviceAttachedEvent     = "onDeviceAttached";
+    final String onDeviceDetachedEvent     = "onDeviceDetached";
+    final String onServiceStarted          = "onServiceStarted";
+    final String onServiceStopped          = "onServiceStopped";
+    final String onReadDataFromPort        = "onReadDataFromPort";
+    final String onUsbPermissionGranted    = "onUsbPermissionGranted";
+    final String onStatsEvent              = "onStats";
+    final String onModbusDataEvent         = "onModbusData";
+    final String onReplayFinishedEvent     = "onReplayFinished";
+    final String onConnectionStateEvent    = "onConnectionState";
+    final String onReconnectedEvent        = "onReconnected";
+    final String onTelemetryEvent          = "onTelemetry";
+    final String onFileTransferProgressEvent = "onFileTransferProgress";
 
     //SUPPORTED DRIVER LIST
 
     private List<String> driverList;
 
     private UsbManager usbManager;
-    private UsbDevice device;
-    private UsbDeviceConnection connection;
-    private UsbSerialDevice serialPort;
-    private boolean serialPortConnected;
 
-    //Connection Settings
-    private int DATA_BIT     = UsbSerialInterface.DATA_BITS_8;
-    private int STOP_BIT     = UsbSerialInterface.STOP_BITS_1;
-    private int PARITY       =  UsbSerialInterface.PARITY_NONE;
-    private int FLOW_CONTROL = UsbSerialInterface.FLOW_CONTROL_OFF;
-    private int BAUD_RATE = 9600;
-    private int readBufferSize = 16 * 1024;
+    //Open ports by port id. Calls without a port id use the last connected port.
+    private final Map<Integer, PortSession> ports = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPortId = new AtomicInteger(1);
+    private volatile int defaultPortId = -1;
 
+    //Settings new connections start from
+    private final PortSettings defaultSettings = new PortSettings();
 
     private boolean autoConnect = false;
-    private String autoConnectDeviceName;
     private int autoConnectBaudRate = 9600;
-    private int portInterface = -1;
-    private int returnedDataType = Definitions.RETURNED_DATA_TYPE_INTARRAY;
-    private String driver = "AUTO";
+    private volatile List<DeviceRegistry.MatchRule> autoConnectRules = DeviceRegistry.defaultRules();
+
+    private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+
+    private volatile SharedReadBuffer sharedReadBuffer;
 
+    private ScheduledExecutorService statsTimer;
+    private long memorySampleNanos = 0;
+    private long memorySampleBytes = 0;
 
     private boolean usbServiceStarted = false;
 
@@ -107,7 +117,7 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
         driverList.add("cdc");
     }
 
-    private void eventEmit(String eventName, @Nullable Object data) {
+    void eventEmit(String eventName, @Nullable Object data) {
         try {
             if (reactContext.hasActiveCatalystInstance()) {
                 DeviceEventManagerModule.RCTDeviceEventEmitter emitter =
@@ -119,7 +129,7 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
         } catch (Exception ignored) {}
     }
 
-    private WritableMap createError(int code, String message) {
+    WritableMap createError(int code, String message) {
         WritableMap map = Arguments.createMap();
         map.putBoolean("status", false);
         map.putInt("errorCode", code);
@@ -128,6 +138,10 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
         return map;
     }
 
+    SharedReadBuffer getSharedReadBuffer() {
+        return sharedReadBuffer;
+    }
+
     // === Broadcast receiver ===
     private final BroadcastReceiver usbReceiver = new BroadcastReceiver() {
         @Override
@@ -143,22 +157,39 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
                     case ACTION_USB_NOT_OPENED:
                         eventEmit(onErrorEvent, createError(Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT, Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT_MESSAGE));
                         break;
-                    case ACTION_USB_ATTACHED:
-                        eventEmit(onDeviceAttachedEvent, null);
-                        if(autoConnect && chooseFirstDevice()) {
-                            connectDevice(autoConnectDeviceName, autoConnectBaudRate);
+                    case ACTION_USB_ATTACHED: {
+                        UsbDevice attached = getDeviceExtra(intent);
+                        if (attached != null) {
+                            deviceRegistry.add(attached);
+                        } else {
+                            deviceRegistry.reset(usbManager.getDeviceList().values());
                         }
+                        eventEmit(onDeviceAttachedEvent, null);
+                        reattachWaitingPorts();
+                        checkAutoConnect();
                         break;
-                    case ACTION_USB_DETACHED:
-                        eventEmit(onDeviceDetachedEvent, null);
-                        if(serialPortConnected) {
-                            stopConnection();
+                    }
+                    case ACTION_USB_DETACHED: {
+                        UsbDevice detached = getDeviceExtra(intent);
+                        if (detached != null) {
+                            deviceRegistry.remove(detached.getDeviceName());
+                        } else {
+                            deviceRegistry.reset(usbManager.getDeviceList().values());
                         }
+                        eventEmit(onDeviceDetachedEvent, null);
+                        stopDetachedPorts(detached);
                         break;
-                    case ACTION_USB_PERMISSION :
+                    }
+                    case ACTION_USB_PERMISSION : {
                         boolean granted = intent.getBooleanExtra(UsbManager.EXTRA_PERMISSION_GRANTED, false);
-                        startConnection(granted);
+                        UsbDevice device = getDeviceExtra(intent);
+                        if (granted && device != null && deviceRegistry.get(device.getDeviceName()) != null) {
+                            // Reads the serial number again, now that it is allowed.
+                            deviceRegistry.add(device);
+                        }
+                        startConnection(findPort(device), granted);
                         break;
+                    }
                     case ACTION_USB_PERMISSION_GRANTED:
                         eventEmit(onUsbPermissionGranted, null);
                         break;
@@ -205,6 +236,11 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
             } catch (IllegalArgumentException ignored) {}
             usbServiceStarted = false;
         }
+        for (PortSession session : ports.values()) {
+            session.close();
+        }
+        ports.clear();
+        setStatsInterval(0);
         reactContext.removeLifecycleEventListener(this);
     }
 
@@ -217,13 +253,14 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
         setFilters();
 
         usbManager = (UsbManager) reactContext.getSystemService(Context.USB_SERVICE);
+        deviceRegistry.reset(usbManager.getDeviceList().values());
 
         usbServiceStarted = true;
 
         //Return usb status when service is started.
         WritableMap map = Arguments.createMap();
 
-        map.putBoolean("deviceAttached", !usbManager.getDeviceList().isEmpty());
+        map.putBoolean("deviceAttached", !deviceRegistry.all().isEmpty());
 
         eventEmit(onServiceStarted, map);
 
@@ -232,7 +269,7 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
 
     @Override
     public void stopUsbService() {
-        if(serialPortConnected) {
+        if(hasConnectedUsbPort()) {
             eventEmit(onErrorEvent, createError(Definitions.ERROR_SERVICE_STOP_FAILED, Definitions.ERROR_SERVICE_STOP_FAILED_MESSAGE));
             return;
         }
@@ -245,15 +282,17 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
     }
 
     // === Status ===
-    @Override public void isOpen(Promise promise) { 
-        promise.resolve(serialPortConnected); 
+    @Override public void isOpen(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        promise.resolve(session != null && session.isConnected());
     }
     @Override public void isServiceStarted(Promise promise) {
          promise.resolve(usbServiceStarted); 
     }
 
     @Override public void isSupported(String deviceName, Promise promise) {
-        if(!chooseDevice(deviceName)) {
+        UsbDevice device = chooseDevice(deviceName);
+        if(device == null) {
             promise.reject(String.valueOf(Definitions.ERROR_DEVICE_NOT_FOUND), Definitions.ERROR_DEVICE_NOT_FOUND_MESSAGE);
         } else {
             promise.resolve(UsbSerialDevice.isSupported(device));
@@ -268,183 +307,707 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
             return;
         }
 
-        UsbManager manager = (UsbManager) reactContext.getSystemService(Context.USB_SERVICE);
-
-        HashMap<String, UsbDevice> devices = manager.getDeviceList();
+        promise.resolve(toDeviceArray(deviceRegistry.all()));
+    }
 
-        if(devices.isEmpty()) {
-            promise.resolve(Arguments.createArray());
+    @Override
+    public void findDevices(ReadableMap match, Promise promise) {
+        if(!usbServiceStarted) {
+            promise.reject(String.valueOf(Definitions.ERROR_USB_SERVICE_NOT_STARTED), Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE);
             return;
         }
+        List<DeviceRegistry.Entry> found = deviceRegistry.find(
+                getInt(match, "vendorId", -1),
+                getInt(match, "productId", -1),
+                getString(match, "serialNumber", null));
+        promise.resolve(toDeviceArray(found));
+    }
 
-        WritableArray deviceList = Arguments.createArray();
-        for(Map.Entry<String, UsbDevice> entry: devices.entrySet()) {
-            UsbDevice d = entry.getValue();
+    @Override
+    public void getOpenPorts(Promise promise) {
+        WritableArray list = Arguments.createArray();
+        for (PortSession session : ports.values()) {
+            WritableMap map = session.createParams();
+            map.putString("name", session.getName());
+            map.putBoolean("connected", session.isConnected());
+            map.putInt("state", session.supervisor.getState());
+            list.pushMap(map);
+        }
+        promise.resolve(list);
+    }
 
-            WritableMap map = Arguments.createMap();
-            map.putString("name", d.getDeviceName());
-            map.putInt("vendorId", d.getVendorId());
-            map.putInt("productId", d.getProductId());
+    // === Stats ===
+    @Override
+    public void getStats(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+            return;
+        }
+        promise.resolve(session.getStats());
+    }
 
-            deviceList.pushMap(map);
+    /**
+     * Garbage collection and allocation of the whole app process, from the ART runtime
+     * stats; values the runtime does not report are -1. allocationRate is bytes per second
+     * since the previous call.
+     */
+    @Override
+    public synchronized void getMemoryStats(Promise promise) {
+        long now = System.nanoTime();
+        long bytesAllocated = runtimeStat("art.gc.bytes-allocated");
+        WritableMap map = Arguments.createMap();
+        map.putDouble("gcCount", runtimeStat("art.gc.gc-count"));
+        map.putDouble("gcTimeMs", runtimeStat("art.gc.gc-time"));
+        map.putDouble("blockingGcCount", runtimeStat("art.gc.blocking-gc-count"));
+        map.putDouble("blockingGcTimeMs", runtimeStat("art.gc.blocking-gc-time"));
+        map.putDouble("bytesAllocated", bytesAllocated);
+        map.putDouble("allocationRate", bytesAllocated < 0 || memorySampleNanos == 0 ? -1
+                : (bytesAllocated - memorySampleBytes) * 1e9 / Math.max(1, now - memorySampleNanos));
+        Runtime runtime = Runtime.getRuntime();
+        map.putDouble("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+        memorySampleNanos = now;
+        memorySampleBytes = bytesAllocated;
+        promise.resolve(map);
+    }
+
+    private static long runtimeStat(String name) {
+        try {
+            String value = Debug.getRuntimeStat(name);
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException err) {
+            return -1;
         }
+    }
 
-        promise.resolve(deviceList);
+    @Override
+    public synchronized void setStatsInterval(double intervalMs) {
+        if(statsTimer != null) {
+            statsTimer.shutdownNow();
+            statsTimer = null;
+        }
+        if(intervalMs < 1) {
+            return;
+        }
+        statsTimer = Executors.newSingleThreadScheduledExecutor();
+        statsTimer.scheduleAtFixedRate(() -> {
+            for(PortSession session: ports.values()) {
+                eventEmit(onStatsEvent, session.getStats());
+            }
+        }, (long) intervalMs, (long) intervalMs, TimeUnit.MILLISECONDS);
     }
 
     // === Connection ===
     @Override
-    public void connectDevice(String deviceName, double baudRate) {
+    public double connectDevice(String deviceName, double baudRate) {
          try {
             if(!usbServiceStarted){
                 eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
-                return;
-            }
-
-            if(serialPortConnected) {
-                eventEmit(onErrorEvent, createError(Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED, Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED_MESSAGE));
-                return;
+                return -1;
             }
 
             if(deviceName.isEmpty() || deviceName.length() < 0) {
                 eventEmit(onErrorEvent, createError(Definitions.ERROR_CONNECT_DEVICE_NAME_INVALID, Definitions.ERROR_CONNECT_DEVICE_NAME_INVALID_MESSAGE));
-                return;
+                return -1;
             }
 
-            if(baudRate < 1){
-                eventEmit(onErrorEvent, createError(Definitions.ERROR_CONNECT_BAUDRATE_EMPTY, Definitions.ERROR_CONNECT_BAUDRATE_EMPTY_MESSAGE));
-                return;
+            if(findPort(deviceName) != null) {
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED, Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED_MESSAGE));
+                return -1;
             }
 
-            if(!autoConnect) {
-                this.BAUD_RATE = (int) baudRate;
+            if(baudRate < 1){
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_CONNECT_BAUDRATE_EMPTY, Definitions.ERROR_CONNECT_BAUDRATE_EMPTY_MESSAGE));
+                return -1;
             }
 
-            if(!chooseDevice(deviceName)) {
+            UsbDevice device = chooseDevice(deviceName);
+            if(device == null) {
                 eventEmit(onErrorEvent, createError(Definitions.ERROR_X_DEVICE_NOT_FOUND, Definitions.ERROR_X_DEVICE_NOT_FOUND_MESSAGE + deviceName));
-                return;
+                return -1;
             }
 
-            requestUserPermission();
+            PortSettings settings = defaultSettings.copy();
+            settings.baudRate = autoConnect ? autoConnectBaudRate : (int) baudRate;
+
+            int portId = nextPortId.getAndIncrement();
+            PortSession session = new PortSession(this, portId, new UsbSerialTransport(usbManager, device, settings), settings);
+            ports.put(portId, session);
+            defaultPortId = portId;
+
+            requestUserPermission(session, device);
+            return portId;
 
         } catch (Exception err) {
             eventEmit(onErrorEvent, createError(Definitions.ERROR_CONNECTION_FAILED, Definitions.ERROR_CONNECTION_FAILED_MESSAGE + " Catch Error Message:" + err.getMessage()));
+            return -1;
         }
     }
 
     @Override
-    public void disconnect() { 
-        if(!usbServiceStarted){
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
-            return;
+    public double connectLoopback(@Nonnull ReadableMap options) {
+        int portId = nextPortId.getAndIncrement();
+        String name = options.hasKey("name") && !options.isNull("name") ? options.getString("name") : "loopback-" + portId;
+        if(findPort(name) != null) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED, Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED_MESSAGE));
+            return -1;
         }
 
-        if(!serialPortConnected) {
+        byte[] pattern = new byte[0];
+        ReadableArray patternArray = options.hasKey("pattern") && !options.isNull("pattern") ? options.getArray("pattern") : null;
+        if(patternArray != null) {
+            pattern = new byte[patternArray.size()];
+            for (int i = 0; i < pattern.length; i++) pattern[i] = (byte) patternArray.getInt(i);
+        }
+        LoopbackTransport transport = new LoopbackTransport(
+                name,
+                getBoolean(options, "echo", true),
+                getBoolean(options, "generate", false),
+                options.hasKey("bytesPerSecond") && !options.isNull("bytesPerSecond") ? (long) options.getDouble("bytesPerSecond") : 0,
+                getInt(options, "chunkSize", 64),
+                pattern);
+
+        PortSession session = new PortSession(this, portId, transport, defaultSettings.copy());
+        ports.put(portId, session);
+        defaultPortId = portId;
+        session.open();
+        return portId;
+    }
+
+    @Override
+    public double connectReplay(String path, @Nonnull ReadableMap options) {
+        final int portId = nextPortId.getAndIncrement();
+        String name = options.hasKey("name") && !options.isNull("name") ? options.getString("name") : "replay-" + portId;
+        if(findPort(name) != null) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED, Definitions.ERROR_SERIALPORT_ALREADY_CONNECTED_MESSAGE));
+            return -1;
+        }
+
+        double speed = options.hasKey("speed") && !options.isNull("speed") ? options.getDouble("speed") : 1;
+        final long[] readEventsAtStart = new long[1];
+        ReplayTransport transport = new ReplayTransport(name, path, speed, (records, bytes, elapsedNanos) -> {
+            PortSession session = ports.get(portId);
+            if(session == null) {
+                return;
+            }
+            session.awaitDispatched(1000);
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            long events = session.stats.readEventsEmitted() - readEventsAtStart[0];
+            WritableMap params = session.createParams();
+            params.putDouble("records", records);
+            params.putDouble("bytes", bytes);
+            params.putDouble("events", events);
+            params.putDouble("durationMs", elapsedNanos / 1e6);
+            params.putDouble("eventsPerSecond", events / seconds);
+            params.putDouble("bytesPerSecond", bytes / seconds);
+            session.emit(onReplayFinishedEvent, params);
+        });
+
+        PortSession session = new PortSession(this, portId, transport, defaultSettings.copy());
+        readEventsAtStart[0] = session.stats.readEventsEmitted();
+        ports.put(portId, session);
+        defaultPortId = portId;
+        session.open();
+        return portId;
+    }
+
+    @Override
+    public void disconnect(@Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session != null && !session.isConnected() && session.supervisor.isReconnecting()) {
+            stopConnection(session);
+            return;
+        }
+        if(session == null || !session.isConnected()) {
+            if(!usbServiceStarted){
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+                return;
+            }
             eventEmit(onErrorEvent, createError(Definitions.ERROR_SERIALPORT_ALREADY_DISCONNECTED, Definitions.ERROR_SERIALPORT_ALREADY_DISCONNECTED_MESSAGE));
             return;
         }
-        stopConnection();
+        stopConnection(session);
      }
 
     // === Writing Methods ===
-    @Override public void writeBytes(@Nonnull ReadableArray data) {
-        if(!usbServiceStarted){
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+    @Override public void writeBytes(@Nonnull ReadableArray data, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
-        if(!serialPortConnected || serialPort == null) {
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+
+        byte[] buffer = session.bufferPool.acquire(data.size());
+        for (int i = 0; i < data.size(); i++) buffer[i] = (byte) data.getInt(i);
+        session.write(buffer, data.size(), true, promise);
+    }
+
+    @Override public void writeString(String data, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
-
-        byte[] bytes = new byte[data.size()];
-        for (int i = 0; i < data.size(); i++) bytes[i] = (byte) data.getInt(i);
-        serialPort.write(bytes);
+        session.write(data.getBytes(), promise);
     }
 
-    @Override public void writeString(String data) {
-        if(!usbServiceStarted){
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+    @Override public void writeBase64(String data, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
-        if(!serialPortConnected || serialPort == null) {
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+
+        byte[] buffer = session.bufferPool.acquire(Base64Codec.maxDecodedLength(data));
+        int length = Base64Codec.decode(data, buffer);
+        if(length < 0) {
+            session.bufferPool.release(buffer);
+            String message = Definitions.ERROR_INVALID_ENCODED_DATA_MESSAGE + "not base64";
+            session.emit(onErrorEvent, session.createError(Definitions.ERROR_INVALID_ENCODED_DATA, message));
+            promise.reject(String.valueOf(Definitions.ERROR_INVALID_ENCODED_DATA), message);
             return;
         }
-        serialPort.write(data.getBytes());
+        session.write(buffer, length, true, promise);
     }
 
-    @Override public void writeBase64(String data) {
-        if(!usbServiceStarted){
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+    @Override public void writeHexString(String data, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
-        if(!serialPortConnected || serialPort == null) {
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+
+        byte[] buffer = session.bufferPool.acquire(data.length() / 2);
+        int length = HexCodec.decode(data, buffer);
+        if(length < 0) {
+            session.bufferPool.release(buffer);
+            String message = Definitions.ERROR_INVALID_ENCODED_DATA_MESSAGE + "not hex";
+            session.emit(onErrorEvent, session.createError(Definitions.ERROR_INVALID_ENCODED_DATA, message));
+            promise.reject(String.valueOf(Definitions.ERROR_INVALID_ENCODED_DATA), message);
+            return;
+        }
+        if(length == 0) {
+            session.bufferPool.release(buffer);
+            promise.resolve(0);
+            return;
+        }
+        session.write(buffer, length, true, promise);
+    }
+
+    @Override public void transact(@Nonnull ReadableArray data, @Nonnull ReadableMap options, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
 
-        byte [] bytes = Base64.decode(data, Base64.DEFAULT);
-        serialPort.write(bytes);
+        byte[] bytes = toBytes(data);
+        byte[] prefix = options.hasKey("prefix") && !options.isNull("prefix") ? toBytes(options.getArray("prefix")) : new byte[0];
+        byte[] terminator = options.hasKey("terminator") && !options.isNull("terminator") ? toBytes(options.getArray("terminator")) : new byte[0];
+        int responseLength = getInt(options, "responseLength", 0);
+        int maxResponseLength = getInt(options, "maxResponseLength", Definitions.DEFAULT_MAX_FRAME_LENGTH);
+        int timeoutMs = getInt(options, "timeoutMs", Definitions.DEFAULT_TRANSACTION_TIMEOUT_MS);
+        session.transact(new PortTransactions.Request(bytes, prefix, terminator, responseLength, maxResponseLength, Math.max(1, timeoutMs), session.promiseCallback(promise)));
     }
 
-    @Override public void writeHexString(String data) {
-        if(!usbServiceStarted){
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+    // === Modbus RTU ===
+    @Override public void modbusRequest(@Nonnull ReadableMap request, @Nullable Double portId, final Promise promise) {
+        final PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
-        if(!serialPortConnected || serialPort == null) {
+
+        final int slaveId = getInt(request, "slaveId", 0);
+        final int functionCode = getInt(request, "functionCode", 0);
+        final int address = getInt(request, "address", 0);
+        int quantity = getInt(request, "quantity", 0);
+        int[] values = new int[0];
+        if(request.hasKey("values") && !request.isNull("values")) {
+            ReadableArray array = request.getArray("values");
+            values = new int[array.size()];
+            for (int i = 0; i < values.length; i++) values[i] = array.getInt(i);
+        }
+        int timeoutMs = getInt(request, "timeoutMs", Definitions.DEFAULT_TRANSACTION_TIMEOUT_MS);
+
+        try {
+            session.modbus.request(slaveId, functionCode, address, quantity, values, Math.max(1, timeoutMs), new ModbusMaster.Callback() {
+                @Override
+                public void onResponse(ModbusRtu.Response response, double elapsedMs) {
+                    WritableMap params = session.createParams();
+                    params.putInt("slaveId", response.slaveId);
+                    params.putInt("functionCode", response.functionCode);
+                    params.putInt("address", address);
+                    WritableArray responseValues = Arguments.createArray();
+                    for (int value : response.values) responseValues.pushInt(value);
+                    params.putArray("values", responseValues);
+                    params.putDouble("elapsedMs", elapsedMs);
+                    promise.resolve(params);
+                }
+
+                @Override
+                public void onError(int code, String message) {
+                    promise.reject(String.valueOf(code), message);
+                }
+            });
+        } catch (IllegalArgumentException err) {
+            promise.reject(String.valueOf(Definitions.ERROR_MODBUS_INVALID_REQUEST), Definitions.ERROR_MODBUS_INVALID_REQUEST_MESSAGE + err.getMessage());
+        }
+    }
+
+    @Override public double addModbusPoll(@Nonnull ReadableMap poll, @Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session == null) {
             eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+            return -1;
+        }
+        try {
+            return session.modbus.addPoll(
+                    getInt(poll, "slaveId", 0),
+                    getInt(poll, "functionCode", 0),
+                    getInt(poll, "address", 0),
+                    getInt(poll, "quantity", 0),
+                    getInt(poll, "intervalMs", 0),
+                    Math.max(1, getInt(poll, "timeoutMs", Definitions.DEFAULT_TRANSACTION_TIMEOUT_MS)));
+        } catch (IllegalArgumentException err) {
+            eventEmit(onErrorEvent, session.createError(Definitions.ERROR_MODBUS_INVALID_REQUEST, Definitions.ERROR_MODBUS_INVALID_REQUEST_MESSAGE + err.getMessage()));
+            return -1;
+        }
+    }
+
+    @Override public void removeModbusPoll(double pollId, @Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session != null) {
+            session.modbus.removePoll((int) pollId);
+        }
+    }
+
+    @Override public double schedulePeriodicWrite(@Nonnull ReadableArray data, double periodMs, @Nonnull ReadableMap options, @Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+            return -1;
+        }
+        try {
+            return session.periodicWrites.schedule(
+                    toBytes(data),
+                    periodMs,
+                    options.hasKey("initialDelayMs") && !options.isNull("initialDelayMs") ? options.getDouble("initialDelayMs") : 0,
+                    getBoolean(options, "fixedRate", true));
+        } catch (IllegalArgumentException err) {
+            eventEmit(onErrorEvent, session.createError(Definitions.ERROR_PERIODIC_WRITE_INVALID, Definitions.ERROR_PERIODIC_WRITE_INVALID_MESSAGE + err.getMessage()));
+            return -1;
+        }
+    }
+
+    @Override public void cancelPeriodicWrite(double scheduleId, @Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session != null) {
+            session.periodicWrites.cancel((int) scheduleId);
+        }
+    }
+
+    @Override public void flush(@Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
             return;
         }
+        session.flush(promise);
+    }
 
-        if(data.length() < 1) {
+    @Override public void getWriteQueueStatus(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
             return;
         }
+        promise.resolve(session.getWriteQueueStatus());
+    }
 
-        byte[] bytes = new byte[data.length() / 2];
-        for (int i = 0; i < bytes.length; i++) {
-            int index = i * 2;
+    // === File transfer ===
+    @Override public void sendFile(String path, double protocol, ReadableMap options, @Nullable Double portId, Promise promise) {
+        startFileTransfer(path, (int) protocol, true, options, portId, promise);
+    }
 
-            String hex = data.substring(index, index + 2);
+    @Override public void receiveFile(String path, double protocol, ReadableMap options, @Nullable Double portId, Promise promise) {
+        startFileTransfer(path, (int) protocol, false, options, portId, promise);
+    }
 
-            if(Definitions.hexChars.indexOf(hex.substring(0, 1)) == -1 || Definitions.hexChars.indexOf(hex.substring(1, 2)) == -1) {
-                return;
+    @Override public boolean cancelFileTransfer(@Nullable Double portId) {
+        PortSession session = getPort(portId);
+        return session != null && session.cancelFileTransfer("cancelled");
+    }
+
+    private void startFileTransfer(String path, int protocol, boolean sending, ReadableMap options, @Nullable Double portId, Promise promise) {
+        PortSession session = getWritablePort(portId, promise);
+        if(session == null) {
+            return;
+        }
+        File file = new File(path);
+        String failure = null;
+        if(sending && !file.canRead()) {
+            failure = "cannot read " + path;
+        } else {
+            try {
+                FileTransfer transfer = new FileTransfer(session, this, file, protocol, sending,
+                        getInt(options, "chunkSize", Definitions.DEFAULT_WRITE_TRANSFER_SIZE),
+                        getInt(options, "timeoutMs", Definitions.DEFAULT_FILE_TRANSFER_TIMEOUT_MS),
+                        getInt(options, "idleTimeoutMs", Definitions.DEFAULT_FILE_TRANSFER_IDLE_TIMEOUT_MS),
+                        options.hasKey("length") && !options.isNull("length") ? (long) options.getDouble("length") : 0,
+                        getInt(options, "maxRetries", Definitions.DEFAULT_FILE_TRANSFER_MAX_RETRIES),
+                        getInt(options, "progressIntervalMs", Definitions.DEFAULT_FILE_TRANSFER_PROGRESS_MS),
+                        promise);
+                if(!session.startFileTransfer(transfer)) {
+                    failure = "another transfer is running";
+                }
+            } catch (IllegalArgumentException err) {
+                failure = err.getMessage();
             }
+        }
+        if(failure != null) {
+            promise.reject(String.valueOf(Definitions.ERROR_FILE_TRANSFER_FAILED), Definitions.ERROR_FILE_TRANSFER_FAILED_MESSAGE + failure);
+        }
+    }
 
-            int v = Integer.parseInt(hex, 16);
-            bytes[i] = (byte) v;
+    // === Capture ===
+    @Override
+    public void startCapture(String path, ReadableMap options, @Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+            return;
+        }
+        try {
+            session.startCapture(
+                    path,
+                    Math.max(0, getInt(options, "maxFileBytes", Definitions.DEFAULT_CAPTURE_FILE_BYTES)),
+                    Math.max(0, getInt(options, "maxFiles", 0)),
+                    Math.max(0, getInt(options, "maxQueuedBytes", Definitions.DEFAULT_CAPTURE_QUEUE_BYTES)));
+            promise.resolve(null);
+        } catch (IOException err) {
+            promise.reject(String.valueOf(Definitions.ERROR_CAPTURE_FAILED), Definitions.ERROR_CAPTURE_FAILED_MESSAGE + err.getMessage());
+        }
+    }
+
+    @Override
+    public void stopCapture(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if(session == null || !session.stopCapture(promise)) {
+            promise.resolve(null);
         }
-        serialPort.write(bytes);
     }
 
     // === Setters ===
-    @Override public void setDataBit(double DATA_BIT) { this.DATA_BIT = (int) DATA_BIT; }
-    @Override public void setStopBit(double STOP_BIT) { this.STOP_BIT = (int) STOP_BIT; }
-    @Override public void setParity(double PARITY) { this.PARITY = (int) PARITY; }
-    @Override public void setFlowControl(double FLOW_CONTROL) { this.FLOW_CONTROL = (int) FLOW_CONTROL; }
+    // Without a port id a setter changes the defaults for new connections and the default port.
+    @Override public void setDataBit(double DATA_BIT, @Nullable Double portId) {
+        if(portId == null) defaultSettings.dataBit = (int) DATA_BIT;
+        for(PortSession session: targetPorts(portId)) {
+            session.settings.dataBit = (int) DATA_BIT;
+            session.applyLineSettings();
+        }
+    }
+    @Override public void setStopBit(double STOP_BIT, @Nullable Double portId) {
+        if(portId == null) defaultSettings.stopBit = (int) STOP_BIT;
+        for(PortSession session: targetPorts(portId)) {
+            session.settings.stopBit = (int) STOP_BIT;
+            session.applyLineSettings();
+        }
+    }
+    @Override public void setParity(double PARITY, @Nullable Double portId) {
+        if(portId == null) defaultSettings.parity = (int) PARITY;
+        for(PortSession session: targetPorts(portId)) {
+            session.settings.parity = (int) PARITY;
+            session.applyLineSettings();
+        }
+    }
+    @Override public void setFlowControl(double FLOW_CONTROL, @Nullable Double portId) {
+        if(portId == null) defaultSettings.flowControl = (int) FLOW_CONTROL;
+        for(PortSession session: targetPorts(portId)) {
+            session.settings.flowControl = (int) FLOW_CONTROL;
+            session.applyLineSettings();
+        }
+    }
+    @Override public void setBaudRate(double baudRate, @Nullable Double portId) {
+        if(baudRate < 1) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_CONNECT_BAUDRATE_EMPTY, Definitions.ERROR_CONNECT_BAUDRATE_EMPTY_MESSAGE));
+            return;
+        }
+        for(PortSession session: targetPorts(portId)) {
+            session.settings.baudRate = (int) baudRate;
+            session.applyLineSettings();
+        }
+    }
     @Override public void setAutoConnect(boolean status) { this.autoConnect = status; }
     @Override public void setAutoConnectBaudRate(double baudRate) { this.autoConnectBaudRate = (int) baudRate; }
-    @Override public void setInterface(double iFace) { this.portInterface = (int) iFace; }
-    @Override public void setReturnedDataType(double type) { 
-        if((int)type == Definitions.RETURNED_DATA_TYPE_HEXSTRING || (int)type == Definitions.RETURNED_DATA_TYPE_INTARRAY) {
-            this.returnedDataType = (int) type;
+    @Override public void setAutoConnectRules(ReadableArray rules) {
+        List<DeviceRegistry.MatchRule> parsed = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            ReadableMap rule = rules.getMap(i);
+            parsed.add(new DeviceRegistry.MatchRule(
+                    getInt(rule, "vendorId", -1),
+                    getInt(rule, "productId", -1),
+                    getString(rule, "serialNumber", null),
+                    getString(rule, "driver", null),
+                    getBoolean(rule, "exclude", false),
+                    getBoolean(rule, "multiple", false)));
+        }
+        this.autoConnectRules = parsed;
+    }
+    @Override public void setInterface(double iFace, @Nullable Double portId) {
+        if(portId == null) defaultSettings.portInterface = (int) iFace;
+        for(PortSession session: targetPorts(portId)) session.settings.portInterface = (int) iFace;
+    }
+    @Override public void setReturnedDataType(double type, @Nullable Double portId) { 
+        if((int)type == Definitions.RETURNED_DATA_TYPE_HEXSTRING || (int)type == Definitions.RETURNED_DATA_TYPE_INTARRAY
+                || (int)type == Definitions.RETURNED_DATA_TYPE_BASE64 || (int)type == Definitions.RETURNED_DATA_TYPE_TEXT
+                || ((int)type == Definitions.RETURNED_DATA_TYPE_SHARED_BUFFER && sharedReadBuffer != null)) {
+            if(portId == null) defaultSettings.returnedDataType = (int) type;
+            for(PortSession session: targetPorts(portId)) session.settings.returnedDataType = (int) type;
         }
      }
-    @Override public void setDriver(String driver) { 
+    @Override public void setDriver(String driver, @Nullable Double portId) { 
         if(driver.isEmpty() || !driverList.contains(driver.trim())) {
             eventEmit(onErrorEvent, createError(Definitions.ERROR_DRIVER_TYPE_NOT_FOUND, Definitions.ERROR_DRIVER_TYPE_NOT_FOUND_MESSAGE));
             return;
         }
-        this.driver = driver;
+        if(portId == null) defaultSettings.driver = driver;
+        for(PortSession session: targetPorts(portId)) session.settings.driver = driver;
+    }
+    @Override public void setReadBufferSize(double bufferSize, @Nullable Double portId) {
+        if(portId == null) defaultSettings.readBufferSize = (int) bufferSize;
+        for(PortSession session: targetPorts(portId)) session.settings.readBufferSize = (int) bufferSize;
+    }
+    @Override public void setFraming(double type, @Nonnull ReadableMap options, @Nullable Double portId) {
+        try {
+            Framer.Factory factory = createFramerFactory((int) type, options);
+            boolean batch = options.hasKey("batch") && options.getBoolean("batch");
+            if(portId == null) {
+                defaultSettings.framerFactory = factory;
+                defaultSettings.batchFrames = batch;
+            }
+            for(PortSession session: targetPorts(portId)) session.setFraming(factory, batch);
+        } catch (Exception err) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_FRAMING_INVALID, Definitions.ERROR_FRAMING_INVALID_MESSAGE + " " + err.getMessage()));
+        }
+    }
+    @Override public void setFrameChecksum(double type, ReadableMap options, @Nullable Double portId) {
+        FrameChecksum checksum = null;
+        if((int) type != Definitions.CHECKSUM_NONE) {
+            try {
+                checksum = new FrameChecksum((int) type,
+                        getInt(options, "startOffset", 0),
+                        getInt(options, "endOffset", 0),
+                        getBoolean(options, "littleEndian", FrameChecksum.defaultLittleEndian((int) type)),
+                        getBoolean(options, "strip", false));
+            } catch (IllegalArgumentException err) {
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_FRAMING_INVALID, Definitions.ERROR_FRAMING_INVALID_MESSAGE + " " + err.getMessage()));
+                return;
+            }
+        }
+        if(portId == null) defaultSettings.frameChecksum = checksum;
+        for(PortSession session: targetPorts(portId)) session.setFrameChecksum(checksum);
+    }
+    @Override public void setTelemetry(double format, ReadableMap options, @Nullable Double portId) {
+        TelemetryAggregator.Layout layout = null;
+        if((int) format != Definitions.TELEMETRY_NONE) {
+            String separator = getString(options, "separator", ",");
+            ReadableArray fieldArray = options.hasKey("fields") && !options.isNull("fields") ? options.getArray("fields") : null;
+            String[] fields = new String[fieldArray == null ? 0 : fieldArray.size()];
+            for(int i = 0; i < fields.length; i++) {
+                fields[i] = fieldArray.isNull(i) ? null : fieldArray.getString(i);
+            }
+            try {
+                if(separator.length() != 1 || separator.charAt(0) > 0x7F) {
+                    throw new IllegalArgumentException("separator must be one ASCII character");
+                }
+                layout = new TelemetryAggregator.Layout((int) format, fields, (byte) separator.charAt(0),
+                        getInt(options, "windowMs", Definitions.DEFAULT_TELEMETRY_WINDOW_MS),
+                        getBoolean(options, "passthrough", false));
+            } catch (IllegalArgumentException err) {
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_TELEMETRY_INVALID, Definitions.ERROR_TELEMETRY_INVALID_MESSAGE + err.getMessage()));
+                return;
+            }
+        }
+        if(portId == null) defaultSettings.telemetryLayout = layout;
+        for(PortSession session: targetPorts(portId)) session.setTelemetry(layout);
+    }
+    @Override public void setDuplicateFilter(boolean enabled, double heartbeatMs, @Nullable Double portId) {
+        long heartbeat = heartbeatMs >= 1 ? (long) heartbeatMs : 0;
+        if(portId == null) {
+            defaultSettings.duplicateFilter = enabled;
+            defaultSettings.duplicateHeartbeatMs = heartbeat;
+        }
+        for(PortSession session: targetPorts(portId)) session.setDuplicateFilter(enabled, heartbeat);
+    }
+    @Override public void setTextDecoding(String charsetName, ReadableMap options, @Nullable Double portId) {
+        Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (IllegalArgumentException err) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_CHARSET_NOT_SUPPORTED, Definitions.ERROR_CHARSET_NOT_SUPPORTED_MESSAGE + charsetName));
+            return;
+        }
+        boolean splitLines = getBoolean(options, "splitLines", false);
+        int maxLineLength = Math.max(1, getInt(options, "maxLineLength", Definitions.DEFAULT_MAX_FRAME_LENGTH));
+        if(portId == null) {
+            defaultSettings.textCharset = charset;
+            defaultSettings.textSplitLines = splitLines;
+            defaultSettings.textMaxLineLength = maxLineLength;
+        }
+        for(PortSession session: targetPorts(portId)) session.setTextDecoding(charset, splitLines, maxLineLength);
+    }
+    @Override public void setAutoReconnect(boolean enabled, ReadableMap options, @Nullable Double portId) {
+        long initialDelayMs = Math.max(1, getInt(options, "initialDelayMs", Definitions.DEFAULT_RECONNECT_INITIAL_DELAY_MS));
+        long maxDelayMs = Math.max(initialDelayMs, getInt(options, "maxDelayMs", Definitions.DEFAULT_RECONNECT_MAX_DELAY_MS));
+        int maxAttempts = Math.max(0, getInt(options, "maxAttempts", 0));
+        List<PortSettings> targets = new ArrayList<>();
+        if(portId == null) {
+            targets.add(defaultSettings);
+        }
+        for(PortSession session: targetPorts(portId)) targets.add(session.settings);
+        for(PortSettings settings: targets) {
+            settings.reconnectInitialDelayMs = initialDelayMs;
+            settings.reconnectMaxDelayMs = maxDelayMs;
+            settings.reconnectMaxAttempts = maxAttempts;
+            settings.autoReconnect = enabled;
+        }
+    }
+    @Override public void setReadRingBuffer(double capacity, double overflowPolicy, @Nullable Double portId) {
+        int policy = (int) overflowPolicy;
+        if(policy != Definitions.OVERFLOW_DROP_NEWEST && policy != Definitions.OVERFLOW_PAUSE_READING) {
+            policy = Definitions.OVERFLOW_DROP_OLDEST;
+        }
+        int size = capacity >= 1 ? (int) capacity : 0;
+        if(portId == null) {
+            defaultSettings.ringCapacity = size;
+            defaultSettings.ringOverflowPolicy = policy;
+        }
+        for(PortSession session: targetPorts(portId)) session.setReadRingBuffer(size, policy);
+    }
+    @Override public void setWriteQueue(double maxQueuedBytes, double maxTransferSize, @Nullable Double portId) {
+        if(portId == null) {
+            if(maxQueuedBytes >= 1) defaultSettings.writeQueueBytes = (int) maxQueuedBytes;
+            if(maxTransferSize >= 1) defaultSettings.writeTransferSize = (int) maxTransferSize;
+        }
+        for(PortSession session: targetPorts(portId)) session.setWriteQueue((int) maxQueuedBytes, (int) maxTransferSize);
+    }
+    @Override public boolean installSharedReadBuffer(double capacity) {
+        if(capacity < 1 || !SharedReadBuffer.isAvailable()) {
+            return false;
+        }
+        long runtimePointer = reactContext.getJavaScriptContextHolder().get();
+        if(runtimePointer == 0) {
+            return false;
+        }
+        SharedReadBuffer buffer = new SharedReadBuffer((int) capacity);
+        buffer.install(runtimePointer);
+        sharedReadBuffer = buffer;
+        return true;
+    }
+    @Override public void setReadCoalescing(double maxBytes, double maxDelayMs, @Nullable Double portId) {
+        if(portId == null) {
+            defaultSettings.coalesceMaxBytes = (int) maxBytes;
+            defaultSettings.coalesceMaxDelayMs = (long) maxDelayMs;
+        }
+        for(PortSession session: targetPorts(portId)) session.setReadCoalescing((int) maxBytes, (long) maxDelayMs);
     }
-    @Override public void setReadBufferSize(double bufferSize) { this.readBufferSize = (int) bufferSize; }
 
     @Override public void loadDefaultConnectionSetting() {
-        DATA_BIT     = UsbSerialInterface.DATA_BITS_8;
-        STOP_BIT     = UsbSerialInterface.STOP_BITS_1;
-        PARITY       =  UsbSerialInterface.PARITY_NONE;
-        FLOW_CONTROL = UsbSerialInterface.FLOW_CONTROL_OFF;
+        defaultSettings.loadDefaultLineSettings();
     }
 
     @Override
@@ -458,21 +1021,194 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
 
     @Override
     public String hexToUtf16(@Nonnull String hex) {
-        StringBuilder str = new StringBuilder();
-        for (int i = 0; i < hex.length() - 1; i += 2) {
-            String byteStr = hex.substring(i, i + 2);
-            if (byteStr.equals("00")) break;
-            str.append((char) Integer.parseInt(byteStr, 16));
+        String text = HexCodec.decodeToUtf16(hex);
+        if(text == null) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_INVALID_ENCODED_DATA, Definitions.ERROR_INVALID_ENCODED_DATA_MESSAGE + "not hex"));
+            return "";
         }
-        return str.toString();
+        return text;
     }
 
-    // === Internal Methods ===
-    private void requestUserPermission() {
-        if (device == null) {
+
+    // === Pull Reading ===
+    @Override
+    public void read(double maxBytes, double timeoutMs, @Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
             return;
         }
+        session.read(Math.max(0, (int) maxBytes), Math.max(0, (long) timeoutMs), promise);
+    }
+
+    @Override
+    public void available(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        ReadRingBuffer ring = session == null ? null : session.getReadRingBuffer();
+        promise.resolve(ring == null ? 0 : ring.available());
+    }
+
+    @Override
+    public void getReadBufferStatus(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        ReadRingBuffer ring = session == null ? null : session.getReadRingBuffer();
+        if(ring == null) {
+            promise.reject(String.valueOf(Definitions.ERROR_READ_BUFFER_NOT_ENABLED), Definitions.ERROR_READ_BUFFER_NOT_ENABLED_MESSAGE);
+            return;
+        }
+        WritableMap map = Arguments.createMap();
+        map.putInt("capacity", ring.capacity());
+        map.putInt("available", ring.available());
+        map.putDouble("discardedBytes", ring.discardedBytes());
+        map.putBoolean("readingPaused", ring.isWriterBlocked());
+        promise.resolve(map);
+    }
+
+    // === Internal Methods ===
+    @Nullable
+    private PortSession getPort(@Nullable Double portId) {
+        return ports.get(portId == null ? defaultPortId : portId.intValue());
+    }
+
+    private List<PortSession> targetPorts(@Nullable Double portId) {
+        PortSession session = getPort(portId);
+        if(session == null) {
+            if(portId != null) {
+                eventEmit(onErrorEvent, createError(Definitions.ERROR_PORT_NOT_FOUND, Definitions.ERROR_PORT_NOT_FOUND_MESSAGE + portId.intValue()));
+            }
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(session);
+    }
+
+    @Nullable
+    private PortSession getWritablePort(@Nullable Double portId, Promise promise) {
+        PortSession session = getPort(portId);
+        if((session == null || !session.isConnected()) && !usbServiceStarted){
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_USB_SERVICE_NOT_STARTED, Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE));
+            promise.reject(String.valueOf(Definitions.ERROR_USB_SERVICE_NOT_STARTED), Definitions.ERROR_USB_SERVICE_NOT_STARTED_MESSAGE);
+            return null;
+        }
+        if(session == null || !session.isConnected()) {
+            eventEmit(onErrorEvent, createError(Definitions.ERROR_THERE_IS_NO_CONNECTION, Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE));
+            promise.reject(String.valueOf(Definitions.ERROR_THERE_IS_NO_CONNECTION), Definitions.ERROR_THERE_IS_NO_CONNECTION_MESSAGE);
+            return null;
+        }
+        return session;
+    }
+
+    @Nullable
+    private PortSession findPort(@Nullable String deviceName) {
+        if(deviceName == null) {
+            return null;
+        }
+        for(PortSession session: ports.values()) {
+            if(session.getName().equals(deviceName)) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private PortSession findPort(@Nullable UsbDevice device) {
+        return device == null ? null : findPort(device.getDeviceName());
+    }
+
+    private boolean hasConnectedUsbPort() {
+        for(PortSession session: ports.values()) {
+            if(session.isConnected() && session.transport instanceof UsbSerialTransport) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private static UsbDevice getDeviceExtra(Intent intent) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            return intent.getParcelableExtra(UsbManager.EXTRA_DEVICE, UsbDevice.class);
+        }
+        return intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
+    }
+
+    private Framer.Factory createFramerFactory(int type, ReadableMap options) {
+        final int maxFrameLength = getInt(options, "maxFrameLength", Definitions.DEFAULT_MAX_FRAME_LENGTH);
+        switch (type) {
+            case Definitions.FRAMING_NONE:
+                return null;
+            case Definitions.FRAMING_DELIMITER: {
+                ReadableArray delimiter = options.hasKey("delimiter") ? options.getArray("delimiter") : null;
+                if (delimiter == null || delimiter.size() == 0) {
+                    throw new IllegalArgumentException("delimiter is required");
+                }
+                final byte[] bytes = new byte[delimiter.size()];
+                for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) delimiter.getInt(i);
+                final boolean keepDelimiter = getBoolean(options, "keepDelimiter", false);
+                return () -> new Framers.DelimiterFramer(bytes, keepDelimiter, maxFrameLength);
+            }
+            case Definitions.FRAMING_FIXED_LENGTH: {
+                final int length = getInt(options, "length", 0);
+                if (length < 1) {
+                    throw new IllegalArgumentException("length must be positive");
+                }
+                return () -> new Framers.FixedLengthFramer(length);
+            }
+            case Definitions.FRAMING_LENGTH_PREFIX: {
+                final int lengthSize = getInt(options, "lengthSize", 1);
+                if (lengthSize != 1 && lengthSize != 2 && lengthSize != 4) {
+                    throw new IllegalArgumentException("lengthSize must be 1, 2 or 4");
+                }
+                final int lengthOffset = Math.max(0, getInt(options, "lengthOffset", 0));
+                final boolean bigEndian = getBoolean(options, "bigEndian", true);
+                final int lengthAdjust = getInt(options, "lengthAdjust", 0);
+                return () -> new Framers.LengthPrefixFramer(lengthOffset, lengthSize, bigEndian, lengthAdjust, maxFrameLength);
+            }
+            case Definitions.FRAMING_SLIP:
+                return () -> new Framers.SlipFramer(maxFrameLength);
+            case Definitions.FRAMING_COBS:
+                return () -> new Framers.CobsFramer(maxFrameLength);
+            default:
+                throw new IllegalArgumentException("unknown framing type " + type);
+        }
+    }
 
+    private static byte[] toBytes(ReadableArray array) {
+        byte[] bytes = new byte[array.size()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) array.getInt(i);
+        return bytes;
+    }
+
+    private static int getInt(ReadableMap options, String key, int defaultValue) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getInt(key) : defaultValue;
+    }
+
+    private static boolean getBoolean(ReadableMap options, String key, boolean defaultValue) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getBoolean(key) : defaultValue;
+    }
+
+    @Nullable
+    private static String getString(ReadableMap options, String key, @Nullable String defaultValue) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getString(key) : defaultValue;
+    }
+
+    private static WritableArray toDeviceArray(List<DeviceRegistry.Entry> entries) {
+        WritableArray deviceList = Arguments.createArray();
+        for (DeviceRegistry.Entry entry : entries) {
+            WritableMap map = Arguments.createMap();
+            map.putString("name", entry.name);
+            map.putInt("vendorId", entry.vendorId);
+            map.putInt("productId", entry.productId);
+            map.putString("serialNumber", entry.serialNumber);
+            map.putInt("interfaceCount", entry.interfaceCount);
+            map.putString("driver", entry.driver);
+            deviceList.pushMap(map);
+        }
+        return deviceList;
+    }
+
+    private void requestUserPermission(PortSession session, UsbDevice device) {
         Intent intent = new Intent(ACTION_USB_PERMISSION);
         intent.setPackage(reactContext.getPackageName());
 
@@ -484,151 +1220,147 @@ public class RNSerialportModule extends NativeRNSerialportSpec implements Lifecy
         } else {
           flags = 0;
         }
-        PendingIntent pi = PendingIntent.getBroadcast(reactContext, 0, intent, flags);
+        PendingIntent pi = PendingIntent.getBroadcast(reactContext, session.id, intent, flags);
         usbManager.requestPermission(device, pi);
     }
 
-    private void startConnection(boolean granted) {
+    private void startConnection(@Nullable PortSession session, boolean granted) {
+        if (session == null || session.isConnected()) {
+            return;
+        }
         if (granted) {
-            eventEmit(onUsbPermissionGranted, null);
-
-            connection = usbManager.openDevice(device);
-            new Thread(() -> {
-                try {
-                    if (driver.equals("AUTO")) {
-                        serialPort = UsbSerialDevice.createUsbSerialDevice(device, connection, portInterface);
-                    } else {
-                        serialPort = UsbSerialDevice.createUsbSerialDevice(driver, device, connection, portInterface);
-                    }
-
-                    if (serialPort == null || !serialPort.open()) {
-                        eventEmit(onErrorEvent, createError(
-                                Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT,
-                                Definitions.ERROR_COULD_NOT_OPEN_SERIALPORT_MESSAGE));
-                        return;
-                    }
-
-                    serialPortConnected = true;
-                    int baud = autoConnect ? autoConnectBaudRate : BAUD_RATE;
-                    serialPort.setBaudRate(baud);
-                    serialPort.setDataBits(DATA_BIT);
-                    serialPort.setStopBits(STOP_BIT);
-                    serialPort.setParity(PARITY);
-                    serialPort.setFlowControl(FLOW_CONTROL);
-                    serialPort.read(mCallback, readBufferSize);
-
-                    eventEmit(onConnectedEvent, null);
-                } catch (Exception e) {
-                    eventEmit(onErrorEvent, createError(
-                            Definitions.ERROR_CONNECTION_FAILED,
-                            Definitions.ERROR_CONNECTION_FAILED_MESSAGE + " Exception: " + e.getMessage()));
-                }
-            }).start();
+            eventEmit(onUsbPermissionGranted, session.createParams());
+            session.open();
         } else {
-            eventEmit(onErrorEvent, createError(
+            eventEmit(onErrorEvent, session.createError(
                     Definitions.ERROR_USER_DID_NOT_ALLOW_TO_CONNECT,
                     Definitions.ERROR_USER_DID_NOT_ALLOW_TO_CONNECT_MESSAGE));
-            connection = null;
-            device = null;
+            removePort(session);
         }
     }
 
-    private void stopConnection() {
-        if (serialPortConnected) {
-            serialPort.close();
-            connection = null;
-            device = null;
-            serialPortConnected = false;
-            eventEmit(onDisconnectedEvent, null);
+    private void stopConnection(PortSession session) {
+        removePort(session);
+        if (session.isConnected()) {
+            session.close();
+            eventEmit(onDisconnectedEvent, session.createParams());
         } else {
-            eventEmit(onDeviceDetachedEvent, null);
+            session.close();
+            eventEmit(onDeviceDetachedEvent, session.createParams());
         }
     }
 
-    private boolean chooseDevice(String deviceName) {
-        HashMap<String, UsbDevice> usbDevices = usbManager.getDeviceList();
-        if(usbDevices.isEmpty()) {
-            return false;
+    /**
+     * Stops the ports of a detached device, or leaves them waiting for it with auto
+     * reconnect. Without a device in the intent every usb port whose device is no longer
+     * in the device list is handled.
+     */
+    private void stopDetachedPorts(@Nullable UsbDevice detached) {
+        if (detached != null) {
+            PortSession session = findPort(detached);
+            if (session != null) {
+                onDeviceLost(session);
+            }
+            return;
         }
-
-        boolean selected = false;
-
-        for (Map.Entry<String, UsbDevice> entry: usbDevices.entrySet()) {
-            UsbDevice d = entry.getValue();
-
-            if(d.getDeviceName().equals(deviceName)) {
-                device = d;
-                selected = true;
-                break;
+        for (PortSession session : ports.values()) {
+            if (session.transport instanceof UsbSerialTransport && deviceRegistry.get(session.getName()) == null) {
+                onDeviceLost(session);
             }
         }
-
-        return selected;
     }
 
-    private boolean chooseFirstDevice() {
-        HashMap<String, UsbDevice> usbDevices = usbManager.getDeviceList();
-        if(usbDevices.isEmpty()) {
-            return false;
+    private void onDeviceLost(PortSession session) {
+        if (session.supervisor.isWaitingForDevice()) {
+            return;
         }
+        boolean wasConnected = session.isConnected();
+        if (!session.supervisor.onDeviceLost()) {
+            stopConnection(session);
+        } else if (wasConnected) {
+            eventEmit(onDisconnectedEvent, session.createParams());
+        }
+    }
 
-        boolean selected = false;
-
-        for (Map.Entry<String, UsbDevice> entry: usbDevices.entrySet()) {
-            UsbDevice d = entry.getValue();
-
-            int deviceVID = d.getVendorId();
-            int devicePID = d.getProductId();
-
-            if (deviceVID != 0x1d6b && (devicePID != 0x0001 && devicePID != 0x0002 && devicePID != 0x0003) && deviceVID != 0x5c6 && devicePID != 0x904c)
-            {
-                device = d;
-                autoConnectDeviceName = d.getDeviceName();
-                selected = true;
+    /**
+     * Moves ports waiting for their device to it once it is attached again. The usb
+     * permission is only asked for when the app lost it.
+     */
+    private void reattachWaitingPorts() {
+        for (PortSession session : ports.values()) {
+            if (!session.supervisor.isWaitingForDevice() || !(session.transport instanceof UsbSerialTransport)) {
+                continue;
+            }
+            UsbSerialTransport lost = (UsbSerialTransport) session.transport;
+            UsbDevice lostDevice = lost.getDevice();
+            for (DeviceRegistry.Entry entry : deviceRegistry.find(lostDevice.getVendorId(), lostDevice.getProductId(), null)) {
+                if (!lost.isSameDevice(entry) || isClaimed(entry.name, session)) {
+                    continue;
+                }
+                session.replaceTransport(new UsbSerialTransport(usbManager, entry.device, session.settings));
+                if (usbManager.hasPermission(entry.device)) {
+                    session.open();
+                } else {
+                    requestUserPermission(session, entry.device);
+                }
                 break;
             }
         }
-        return selected;
     }
 
-    private void checkAutoConnect() {
-        if(!autoConnect || serialPortConnected) {
-            return;
-        }
-
-        if(chooseFirstDevice()) {
-            connectDevice(autoConnectDeviceName, autoConnectBaudRate);
+    private boolean isClaimed(String deviceName, PortSession except) {
+        for (PortSession session : ports.values()) {
+            if (session != except && !session.supervisor.isWaitingForDevice() && session.getName().equals(deviceName)) {
+                return true;
+            }
         }
+        return false;
     }
 
-    private UsbSerialInterface.UsbReadCallback mCallback = new UsbSerialInterface.UsbReadCallback() {
-        @Override
-        public void onReceivedData(byte[] bytes) {
-        try {
+    void onSessionFailed(PortSession session) {
+        removePort(session);
+        session.close();
+    }
 
-            String payloadKey = "payload";
+    private void removePort(PortSession session) {
+        ports.remove(session.id);
+        if (defaultPortId == session.id) {
+            defaultPortId = -1;
+            for (PortSession other : ports.values()) {
+                defaultPortId = other.id;
+            }
+        }
+    }
 
-            WritableMap params = Arguments.createMap();
+    @Nullable
+    private UsbDevice chooseDevice(String deviceName) {
+        DeviceRegistry.Entry entry = deviceRegistry.get(deviceName);
+        return entry == null ? null : entry.device;
+    }
 
-            if(returnedDataType == Definitions.RETURNED_DATA_TYPE_INTARRAY) {
+    @Nullable
+    private UsbDevice chooseFirstDevice() {
+        // While a port is connected, only devices of a multiple rule may be opened as well.
+        final boolean connected = hasConnectedUsbPort();
+        final List<DeviceRegistry.MatchRule> rules = autoConnectRules;
+        DeviceRegistry.Entry entry = deviceRegistry.choose(rules, candidate -> findPort(candidate.name) != null
+                || (connected && !allowsMultiple(rules, candidate)));
+        return entry == null ? null : entry.device;
+    }
 
-            WritableArray intArray = new WritableNativeArray();
-            for(byte b: bytes) {
-                intArray.pushInt(UnsignedBytes.toInt(b));
-            }
-            params.putArray(payloadKey, intArray);
+    private static boolean allowsMultiple(List<DeviceRegistry.MatchRule> rules, DeviceRegistry.Entry entry) {
+        DeviceRegistry.MatchRule rule = DeviceRegistry.firstMatch(rules, entry);
+        return rule != null && rule.multiple;
+    }
 
-            } else if(returnedDataType == Definitions.RETURNED_DATA_TYPE_HEXSTRING) {
-            String hexString = Definitions.bytesToHex(bytes);
-            params.putString(payloadKey, hexString);
-            } else
+    private void checkAutoConnect() {
+        if(!autoConnect) {
             return;
-
-            eventEmit(onReadDataFromPort, params);
-
-        } catch (Exception err) {
-            eventEmit(onErrorEvent, createError(Definitions.ERROR_NOT_READED_DATA, Definitions.ERROR_NOT_READED_DATA_MESSAGE + " System Message: " + err.getMessage()));
         }
+
+        UsbDevice device = chooseFirstDevice();
+        if(device != null) {
+            connectDevice(device.getDeviceName(), autoConnectBaudRate);
         }
-  };
+    }
 }
@@ -0,0 +1,80 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the read buffer size of a port whose readBufferSize is 0 (adaptive).
+ *
+ * The size starts at what the line carries in WINDOW_MS at the baud rate and follows the
+ * reads seen since: reads filling the whole buffer mean more data was waiting and double
+ * it, reads staying under a quarter of it shrink it, never below the baud rate size.
+ * The UsbSerial library fixes the size when reading starts, so a new size applies from
+ * the next open of the link, i.e. the next connect or reconnect.
+ */
+class ReadBufferSizer {
+
+    static final int MIN_SIZE = 64;
+    static final int MAX_SIZE = 64 * 1024;
+
+    private static final int WINDOW_MS = 20;
+    // Reads needed before the observed sizes are trusted.
+    private static final int MIN_READS = 32;
+
+    private volatile int size = 0;
+
+    // Updated by the I/O thread, read when the link opens.
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong fullReads = new AtomicLong();
+    private final AtomicInteger maxRead = new AtomicInteger();
+
+    /**
+     * Called from the I/O thread for every read.
+     */
+    void onRead(int length) {
+        reads.incrementAndGet();
+        if (length >= size) {
+            fullReads.incrementAndGet();
+        }
+        if (length > maxRead.get()) {
+            maxRead.set(length);
+        }
+    }
+
+    /**
+     * @return the size to start reading with, adjusted by the reads since the last call
+     */
+    int sizeForOpen(int baudRate) {
+        int floor = forBaudRate(baudRate);
+        int next = Math.max(size, floor);
+        long observed = reads.getAndSet(0);
+        long full = fullReads.getAndSet(0);
+        int max = maxRead.getAndSet(0);
+        if (observed >= MIN_READS && size > 0) {
+            if (full * 8 >= observed) {
+                next = Math.min(size * 2, MAX_SIZE);
+            } else if (max * 4 <= size) {
+                next = Math.max(roundUp(max * 2), floor);
+            }
+        }
+        size = next;
+        return next;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static int forBaudRate(int baudRate) {
+        // 10 bits per byte with start and stop bit.
+        long bytes = (long) Math.max(0, baudRate) / 10 * WINDOW_MS / 1000;
+        return roundUp((int) Math.min(bytes, MAX_SIZE));
+    }
+
+    private static int roundUp(int length) {
+        if (length <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        return Math.min(Integer.highestOneBit(length - 1) << 1, MAX_SIZE);
+    }
+}
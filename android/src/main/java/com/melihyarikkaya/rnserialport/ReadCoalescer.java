@@ -0,0 +1,139 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects incoming chunks into one buffer and hands them to the sink as a single
+ * chunk once either maxBytes is reached or maxDelayMs has passed since the first
+ * buffered byte. Both limits at 0 means coalescing is off and chunks pass straight through.
+ *
+ * The timer only decides that maxDelayMs passed; the flush itself runs on flushExecutor,
+ * so the sink is called from the same thread as for size-triggered flushes.
+ */
+class ReadCoalescer {
+
+    interface Sink {
+        void onFlush(byte[] data);
+    }
+
+    private final Sink sink;
+    private final Executor flushExecutor;
+
+    private int maxBytes = 0;
+    private long maxDelayMs = 0;
+
+    private byte[] buffer = new byte[0];
+    private int size = 0;
+
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> pendingFlush;
+    // Counts flushes, so a delayed flush that lost the race to another one does nothing.
+    private long flushes = 0;
+
+    ReadCoalescer(Sink sink, Executor flushExecutor) {
+        this.sink = sink;
+        this.flushExecutor = flushExecutor;
+    }
+
+    synchronized void configure(int maxBytes, long maxDelayMs) {
+        flushLocked();
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxDelayMs = Math.max(0, maxDelayMs);
+    }
+
+    synchronized boolean isEnabled() {
+        return maxBytes > 0 || maxDelayMs > 0;
+    }
+
+    void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    synchronized void write(byte[] data, int offset, int length) {
+        if (!isEnabled()) {
+            sink.onFlush(copyOf(data, offset, length));
+            return;
+        }
+        if (length == 0) {
+            return;
+        }
+
+        ensureCapacity(size + length);
+        System.arraycopy(data, offset, buffer, size, length);
+        size += length;
+
+        if (maxBytes > 0 && size >= maxBytes) {
+            flushLocked();
+        } else if (maxDelayMs > 0 && pendingFlush == null) {
+            final long flush = flushes;
+            pendingFlush = timer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushExecutor.execute(() -> flushDelayed(flush));
+                }
+            }, maxDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flushDelayed(long flush) {
+        if (flush == flushes) {
+            flushLocked();
+        }
+    }
+
+    synchronized void flush() {
+        flushLocked();
+    }
+
+    synchronized void shutdown() {
+        flushLocked();
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private void flushLocked() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        flushes++;
+        if (size == 0) {
+            return;
+        }
+        byte[] chunk = copyOf(buffer, 0, size);
+        size = 0;
+        sink.onFlush(chunk);
+    }
+
+    private void ensureCapacity(int required) {
+        if (buffer.length >= required) {
+            return;
+        }
+        int capacity = Math.max(required, Math.max(buffer.length * 2, maxBytes));
+        byte[] grown = new byte[capacity];
+        System.arraycopy(buffer, 0, grown, 0, size);
+        buffer = grown;
+    }
+
+    private ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor();
+        }
+        return timer;
+    }
+
+    private static byte[] copyOf(byte[] data, int offset, int length) {
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,208 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands received chunks from a port's I/O thread to its dispatch thread, which runs the
+ * read pipeline: transactions, framing, conversion and event emission.
+ *
+ * The handoff is a bounded single producer, single consumer ring of chunk references
+ * without locks. The volatile tail write publishes the slot written before it, so the
+ * dispatch thread always sees the whole chunk. When the ring is full the I/O thread waits
+ * for room, which stops usb reads the same way a slow consumer always did, but conversion
+ * no longer runs on the thread that reads the device.
+ *
+ * Other threads that need to touch pipeline state, such as resetting a framer, post a task
+ * instead; it runs on the dispatch thread after the chunks offered before it.
+ */
+class ReadDispatcher {
+
+    interface Sink {
+        void onChunk(byte[] data, long receivedNanos);
+    }
+
+    private static final long FULL_WAIT_NANOS = 50_000;
+
+    private static final class Task {
+        final Runnable runnable;
+        // Runs once the head reaches this slot.
+        final long after;
+
+        Task(Runnable runnable, long after) {
+            this.runnable = runnable;
+            this.after = after;
+        }
+    }
+
+    private final String name;
+    private final Sink sink;
+    private final byte[][] slots;
+    private final long[] receivedNanos;
+    private final int mask;
+
+    // Next slot to take, written by the dispatch thread only.
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to fill, written by the I/O thread only.
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong fullWaits = new AtomicLong();
+    private final ConcurrentLinkedQueue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean waiting = false;
+    private volatile boolean running = false;
+    private volatile Thread thread;
+
+    /**
+     * @param capacity chunks the ring holds, rounded up to a power of two
+     */
+    ReadDispatcher(String name, int capacity, Sink sink) {
+        this.name = name;
+        this.sink = sink;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new byte[size][];
+        this.receivedNanos = new long[size];
+        this.mask = size - 1;
+    }
+
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatch thread and waits up to Definitions.THREAD_STOP_TIMEOUT_MS for it to
+     * end. Chunks still in the ring are dropped, so callers that need them wait with
+     * awaitIdle first; posted tasks still run, on the caller.
+     */
+    void stop() {
+        Thread dispatchThread;
+        synchronized (this) {
+            running = false;
+            dispatchThread = thread;
+            thread = null;
+        }
+        if (dispatchThread != null) {
+            dispatchThread.interrupt();
+            if (dispatchThread != Thread.currentThread()) {
+                try {
+                    dispatchThread.join(Definitions.THREAD_STOP_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            runTask(task);
+        }
+    }
+
+    /**
+     * Runs task on the dispatch thread once the chunks offered so far are dispatched, so it
+     * never overlaps the read pipeline. Without a dispatch thread it runs on the caller.
+     */
+    void post(Runnable task) {
+        synchronized (this) {
+            if (thread != null) {
+                tasks.add(new Task(task, tail.get()));
+                LockSupport.unpark(thread);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Queues a chunk for the dispatch thread, waiting while the ring is full.
+     * Called from the I/O thread only.
+     *
+     * @return false if the dispatcher is stopped
+     */
+    boolean offer(byte[] data) {
+        long received = System.nanoTime();
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            fullWaits.incrementAndGet();
+            do {
+                if (!running) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+            } while (t - head.get() == slots.length);
+        }
+        slots[(int) t & mask] = data;
+        receivedNanos[(int) t & mask] = received;
+        tail.set(t + 1);
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return running;
+    }
+
+    /**
+     * Times the I/O thread found the ring full and had to wait.
+     */
+    long fullWaits() {
+        return fullWaits.get();
+    }
+
+    int pending() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Waits until every chunk offered and task posted so far is done, or the timeout passes.
+     */
+    void awaitIdle(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (running && (pending() > 0 || !tasks.isEmpty()) && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        // A thread that outlived a stop() must not run next to the one start() made.
+        while (running && thread == self) {
+            long h = head.get();
+            Task task = tasks.peek();
+            if (task != null && task.after <= h) {
+                runTask(task);
+                // Removed only now, so awaitIdle counts the task being run.
+                tasks.poll();
+                continue;
+            }
+            if (h == tail.get()) {
+                // Checked again after announcing the wait, so an offer in between unparks us.
+                waiting = true;
+                if (h == tail.get() && tasks.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            int slot = (int) h & mask;
+            try {
+                sink.onChunk(slots[slot], receivedNanos[slot]);
+            } catch (RuntimeException err) {
+                // One bad chunk must not end the port's dispatching.
+            }
+            // Freed only now, so pending() counts the chunk being dispatched.
+            slots[slot] = null;
+            head.lazySet(h + 1);
+        }
+    }
+
+    private static void runTask(Task task) {
+        try {
+            task.runnable.run();
+        } catch (RuntimeException err) {
+            // Like a bad chunk, a failing task must not end the port's dispatching.
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Bounded byte ring written by the usb read callback and drained by read() calls from JS.
+ * What happens when it is full depends on Definitions.OVERFLOW_*:
+ * drop the oldest bytes, drop the incoming bytes, or block the usb reader until there is room.
+ */
+class ReadRingBuffer {
+
+    private final byte[] data;
+    private final int overflowPolicy;
+
+    private int head = 0;
+    private int size = 0;
+    private long discardedBytes = 0;
+    private boolean closed = false;
+    private boolean writerBlocked = false;
+
+    ReadRingBuffer(int capacity, int overflowPolicy) {
+        this.data = new byte[capacity];
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    synchronized void write(byte[] src, int offset, int length) {
+        switch (overflowPolicy) {
+            case Definitions.OVERFLOW_DROP_NEWEST: {
+                int count = Math.min(length, data.length - size);
+                put(src, offset, count);
+                discardedBytes += length - count;
+                break;
+            }
+            case Definitions.OVERFLOW_PAUSE_READING: {
+                while (length > 0) {
+                    while (size == data.length && !closed) {
+                        writerBlocked = true;
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            closed = true;
+                        }
+                    }
+                    writerBlocked = false;
+                    if (closed) {
+                        discardedBytes += length;
+                        return;
+                    }
+                    int count = Math.min(length, data.length - size);
+                    put(src, offset, count);
+                    offset += count;
+                    length -= count;
+                }
+                break;
+            }
+            default: {
+                if (length > data.length) {
+                    discardedBytes += length - data.length;
+                    offset += length - data.length;
+                    length = data.length;
+                }
+                int overflow = size + length - data.length;
+                if (overflow > 0) {
+                    head = (head + overflow) % data.length;
+                    size -= overflow;
+                    discardedBytes += overflow;
+                }
+                put(src, offset, length);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Waits up to timeoutMs for data and returns at most maxBytes, or an empty array on timeout.
+     */
+    synchronized byte[] read(int maxBytes, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (size == 0 && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+
+        int count = Math.min(maxBytes, size);
+        byte[] out = new byte[count];
+        int first = Math.min(count, data.length - head);
+        System.arraycopy(data, head, out, 0, first);
+        System.arraycopy(data, 0, out, first, count - first);
+        head = (head + count) % data.length;
+        size -= count;
+
+        if (count > 0) {
+            notifyAll();
+        }
+        return out;
+    }
+
+    synchronized int available() {
+        return size;
+    }
+
+    synchronized int capacity() {
+        return data.length;
+    }
+
+    synchronized long discardedBytes() {
+        return discardedBytes;
+    }
+
+    synchronized boolean isWriterBlocked() {
+        return writerBlocked;
+    }
+
+    /**
+     * Releases a blocked writer and pending readers. Buffered bytes stay readable.
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    synchronized void open() {
+        closed = false;
+    }
+
+    private void put(byte[] src, int offset, int length) {
+        int tail = (head + size) % data.length;
+        int first = Math.min(length, data.length - tail);
+        System.arraycopy(src, offset, data, tail, first);
+        System.arraycopy(src, offset + first, data, 0, length - first);
+        size += length;
+        if (length > 0) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that plays the read records of a capture file back as received data.
+ *
+ * Records are delivered from one reader thread at their recorded times divided by speed,
+ * or back to back when speed is 0. Write records and written data are ignored.
+ * A truncated last record ends the replay like the end of the file.
+ */
+class ReplayTransport implements SerialTransport {
+
+    interface Listener {
+        void onReplayFinished(long records, long bytes, long elapsedNanos);
+    }
+
+    // Larger lengths can only come from a corrupt file.
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private final String name;
+    private final String path;
+    private final double speed;
+    private final Listener listener;
+
+    private volatile boolean running = false;
+    private DataInputStream in;
+    private Thread thread;
+
+    ReplayTransport(String name, String path, double speed, Listener listener) {
+        this.name = name;
+        this.path = path;
+        this.speed = Math.max(0, speed);
+        this.listener = listener;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 64 * 1024));
+            byte[] magic = new byte[PortCapture.MAGIC.length];
+            in.readFully(magic);
+            in.readLong();
+            if (!Arrays.equals(magic, PortCapture.MAGIC)) {
+                closeInput();
+                return false;
+            }
+        } catch (IOException err) {
+            closeInput();
+            return false;
+        }
+        running = true;
+        return true;
+    }
+
+    @Override
+    public void setLineSettings(int baudRate, int dataBits, int stopBits, int parity, int flowControl) {}
+
+    @Override
+    public void write(byte[] data) {}
+
+    @Override
+    public synchronized void startReading(final ReadCallback callback, int bufferSize) {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> run(callback), "RNSerialport-replay-" + name);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Thread readerThread;
+        synchronized (this) {
+            readerThread = thread;
+            thread = null;
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+        } else {
+            closeInput();
+        }
+    }
+
+    private void run(ReadCallback callback) {
+        long started = System.nanoTime();
+        long firstRecordNanos = -1;
+        long records = 0;
+        long bytes = 0;
+        try {
+            while (running) {
+                long recordNanos;
+                int direction;
+                byte[] data;
+                try {
+                    recordNanos = in.readLong();
+                    direction = in.readUnsignedByte();
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    data = new byte[length];
+                    in.readFully(data);
+                } catch (EOFException endOfFile) {
+                    break;
+                }
+                if (direction != PortCapture.DIRECTION_READ) {
+                    continue;
+                }
+
+                if (speed > 0) {
+                    if (firstRecordNanos < 0) {
+                        firstRecordNanos = recordNanos;
+                    }
+                    long due = started + (long) ((recordNanos - firstRecordNanos) / speed);
+                    long waitNanos = due - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+                callback.onReceivedData(data);
+                records++;
+                bytes += data.length;
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // A broken file ends the replay where it breaks.
+        } finally {
+            closeInput();
+        }
+        if (running) {
+            listener.onReplayFinished(records, bytes, System.nanoTime() - started);
+        }
+    }
+
+    private synchronized void closeInput() {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException ignored) {}
+        in = null;
+    }
+}
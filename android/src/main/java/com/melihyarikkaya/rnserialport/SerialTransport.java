@@ -0,0 +1,38 @@
+package com.melihyarikkaya.rnserialport;
+
+/**
+ * Byte transport under a port session.
+ * UsbSerialTransport drives real hardware; LoopbackTransport runs the same read and
+ * write pipeline in memory.
+ */
+interface SerialTransport {
+
+    interface ReadCallback {
+        void onReceivedData(byte[] data);
+    }
+
+    String getName();
+
+    /**
+     * Opens the transport. Blocking, called from the session's connect thread.
+     *
+     * @return false if the transport could not be opened
+     */
+    boolean open();
+
+    void setLineSettings(int baudRate, int dataBits, int stopBits, int parity, int flowControl);
+
+    /**
+     * Called from the port's writer thread only. The writer reuses data afterwards, so
+     * anything kept past the call must be a copy.
+     */
+    void write(byte[] data);
+
+    /**
+     * Starts delivering received data in reads of at most bufferSize bytes.
+     * The callback is always called from one thread at a time.
+     */
+    void startReading(ReadCallback callback, int bufferSize);
+
+    void close();
+}
@@ -0,0 +1,96 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A direct ByteBuffer shared with JS as the ArrayBuffer global.__rnSerialportReadBuffer.
+ *
+ * Layout: a 16 byte header followed by a ring of `capacity` data bytes. The header holds two
+ * float64 cursors, counted in bytes since the buffer was installed: at 0 the start cursor (bytes
+ * reserved so far) and at 8 the end cursor (bytes completely written). Every chunk is written
+ * contiguously; when it does not fit before the end of the ring the tail is skipped and the
+ * chunk starts at 0.
+ *
+ * The copy is done natively, seqlock style: the start cursor is stored and fenced before the
+ * bytes are overwritten, and the end cursor is stored with release semantics after them. So a
+ * reader that copies a chunk and then sees startCursor - chunkCursor <= capacity knows the
+ * chunk was not overwritten meanwhile.
+ *
+ * There is one buffer per module, shared by every port returning SHARED_BUFFER data; the chunks
+ * of all ports are interleaved in it and the capacity is shared between them.
+ */
+class SharedReadBuffer {
+
+    interface Sink {
+        void onChunk(int offset, int length, long cursor);
+    }
+
+    static final String PROPERTY_NAME = "__rnSerialportReadBuffer";
+    static final int HEADER_SIZE = 16;
+
+    private static final boolean libraryLoaded;
+
+    static {
+        boolean loaded;
+        try {
+            System.loadLibrary("rnserialport");
+            loaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            loaded = false;
+        }
+        libraryLoaded = loaded;
+    }
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private long cursor = 0;
+
+    SharedReadBuffer(int capacity) {
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect(HEADER_SIZE + capacity).order(ByteOrder.nativeOrder());
+        this.buffer.putDouble(0, 0);
+        this.buffer.putDouble(8, 0);
+    }
+
+    static boolean isAvailable() {
+        return libraryLoaded;
+    }
+
+    /**
+     * Must be called on the JS thread with the pointer from JavaScriptContextHolder.
+     */
+    void install(long runtimePointer) {
+        nativeInstall(runtimePointer, buffer, PROPERTY_NAME);
+    }
+
+    synchronized void write(byte[] data, int offset, int length, Sink sink) {
+        while (length > 0) {
+            int sliceLength = Math.min(length, capacity);
+            int position = (int) (cursor % capacity);
+            if (position + sliceLength > capacity) {
+                cursor += capacity - position;
+                position = 0;
+            }
+
+            long sliceCursor = cursor;
+            cursor += sliceLength;
+
+            int bufferOffset = HEADER_SIZE + position;
+            nativeWrite(buffer, bufferOffset, data, offset, sliceLength, (double) cursor);
+
+            sink.onChunk(bufferOffset, sliceLength, sliceCursor);
+
+            offset += sliceLength;
+            length -= sliceLength;
+        }
+    }
+
+    /**
+     * Publishes cursor as the start cursor, copies the bytes to bufferOffset and then publishes
+     * cursor as the end cursor.
+     */
+    private static native void nativeWrite(ByteBuffer buffer, int bufferOffset, byte[] data, int offset, int length, double cursor);
+
+    private static native void nativeInstall(long runtimePointer, ByteBuffer buffer, String propertyName);
+}
@@ -0,0 +1,356 @@
+package com.melihyarikkaya.rnserialport;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses numeric telemetry lines and aggregates them into tumbling windows.
+ *
+ * Lines end with "\n" ("\r" before it is ignored) and hold CSV columns or key=value pairs
+ * split by the separator, with spaces around fields ignored. Numbers are parsed straight
+ * from the received bytes and keys are matched against the channel names as bytes, so a
+ * line allocates nothing once its channels are known. Every windowMs the timer emits one
+ * summary with count, min, max, mean and last of every channel that got a value, and
+ * nothing for a window without lines.
+ */
+class TelemetryAggregator {
+
+    interface Sink {
+        void onWindow(WritableMap summary);
+    }
+
+    /**
+     * Field layout of the lines. For CSV, fields names the columns in order, null skipping
+     * one. For KEY_VALUE, fields lists the keys to keep; without fields every key is a
+     * channel, up to MAX_CHANNELS.
+     */
+    static class Layout {
+        final int format;
+        final String[] fields;
+        final byte separator;
+        final long windowMs;
+        final boolean passthrough;
+
+        Layout(int format, String[] fields, byte separator, long windowMs, boolean passthrough) {
+            if (format != Definitions.TELEMETRY_CSV && format != Definitions.TELEMETRY_KEY_VALUE) {
+                throw new IllegalArgumentException("unknown telemetry format " + format);
+            }
+            if (format == Definitions.TELEMETRY_CSV && fields.length == 0) {
+                throw new IllegalArgumentException("CSV needs fields");
+            }
+            if (windowMs < 1) {
+                throw new IllegalArgumentException("windowMs must be positive");
+            }
+            this.format = format;
+            this.fields = fields;
+            this.separator = separator;
+            this.windowMs = windowMs;
+            this.passthrough = passthrough;
+        }
+    }
+
+    static final int MAX_CHANNELS = 64;
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final Layout layout;
+    private final Sink sink;
+    private final String threadName;
+
+    // Channel i is fields[i] for CSV and the i-th known key for KEY_VALUE.
+    private final String[] names = new String[MAX_CHANNELS];
+    private final byte[][] nameBytes = new byte[MAX_CHANNELS][];
+    private int channelCount = 0;
+    private final boolean openKeys;
+
+    private final long[] count = new long[MAX_CHANNELS];
+    private final double[] min = new double[MAX_CHANNELS];
+    private final double[] max = new double[MAX_CHANNELS];
+    private final double[] sum = new double[MAX_CHANNELS];
+    private final double[] last = new double[MAX_CHANNELS];
+
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int lineLength = 0;
+    private boolean lineOverflow = false;
+
+    private long windowStartMillis = System.currentTimeMillis();
+    private long lines = 0;
+    private long invalidLines = 0;
+
+    private ScheduledExecutorService timer;
+
+    TelemetryAggregator(Layout layout, Sink sink, String threadName) {
+        this.layout = layout;
+        this.sink = sink;
+        this.threadName = threadName;
+        int known = Math.min(layout.fields.length, MAX_CHANNELS);
+        for (int i = 0; i < known; i++) {
+            String field = layout.fields[i];
+            names[i] = field;
+            nameBytes[i] = field == null ? null : field.getBytes(StandardCharsets.UTF_8);
+        }
+        channelCount = known;
+        openKeys = layout.format == Definitions.TELEMETRY_KEY_VALUE && known == 0;
+    }
+
+    boolean passthrough() {
+        return layout.passthrough;
+    }
+
+    synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        windowStartMillis = System.currentTimeMillis();
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, threadName));
+        timer.scheduleAtFixedRate(this::closeWindow, layout.windowMs, layout.windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Drops a partial line, e.g. when the link went down.
+     */
+    synchronized void reset() {
+        lineLength = 0;
+        lineOverflow = false;
+    }
+
+    synchronized void feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b != '\n') {
+                if (lineLength < MAX_LINE_LENGTH) {
+                    line[lineLength++] = b;
+                } else {
+                    lineOverflow = true;
+                }
+                continue;
+            }
+            if (lineOverflow) {
+                invalidLines++;
+            } else {
+                int lineEnd = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                parseLine(lineEnd);
+            }
+            lineLength = 0;
+            lineOverflow = false;
+        }
+    }
+
+    private void parseLine(int lineEnd) {
+        int values = 0;
+        boolean blank = true;
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i <= lineEnd; i++) {
+            if (i < lineEnd && line[i] != layout.separator) {
+                blank &= line[i] == ' ' || line[i] == '\t';
+                continue;
+            }
+            if (layout.format == Definitions.TELEMETRY_CSV) {
+                if (field < channelCount && names[field] != null && add(field, parseNumber(line, start, i))) {
+                    values++;
+                }
+            } else if (addPair(start, i)) {
+                values++;
+            }
+            field++;
+            start = i + 1;
+        }
+        if (values > 0) {
+            lines++;
+        } else if (!blank) {
+            invalidLines++;
+        }
+    }
+
+    private boolean addPair(int from, int to) {
+        int equals = from;
+        while (equals < to && line[equals] != '=') {
+            equals++;
+        }
+        if (equals == to) {
+            return false;
+        }
+        int keyFrom = from;
+        int keyTo = equals;
+        while (keyFrom < keyTo && isSpace(line[keyFrom])) keyFrom++;
+        while (keyTo > keyFrom && isSpace(line[keyTo - 1])) keyTo--;
+        int channel = findChannel(keyFrom, keyTo);
+        return channel >= 0 && add(channel, parseNumber(line, equals + 1, to));
+    }
+
+    private int findChannel(int from, int to) {
+        int length = to - from;
+        for (int c = 0; c < channelCount; c++) {
+            byte[] name = nameBytes[c];
+            if (name == null || name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && name[i] == line[from + i]) {
+                i++;
+            }
+            if (i == length) {
+                return c;
+            }
+        }
+        if (!openKeys || length == 0 || channelCount == MAX_CHANNELS) {
+            return -1;
+        }
+        // A new key; the only allocation, once per key.
+        nameBytes[channelCount] = new byte[length];
+        System.arraycopy(line, from, nameBytes[channelCount], 0, length);
+        names[channelCount] = new String(nameBytes[channelCount], StandardCharsets.UTF_8);
+        return channelCount++;
+    }
+
+    private boolean add(int channel, double value) {
+        if (Double.isNaN(value)) {
+            return false;
+        }
+        if (count[channel] == 0 || value < min[channel]) {
+            min[channel] = value;
+        }
+        if (count[channel] == 0 || value > max[channel]) {
+            max[channel] = value;
+        }
+        count[channel]++;
+        sum[channel] += value;
+        last[channel] = value;
+        return true;
+    }
+
+    private synchronized void closeWindow() {
+        long now = System.currentTimeMillis();
+        if (lines == 0 && invalidLines == 0) {
+            windowStartMillis = now;
+            return;
+        }
+        WritableMap summary = Arguments.createMap();
+        summary.putDouble("windowStartMs", windowStartMillis);
+        summary.putDouble("windowMs", now - windowStartMillis);
+        summary.putDouble("lines", lines);
+        summary.putDouble("invalidLines", invalidLines);
+        WritableArray channels = Arguments.createArray();
+        for (int c = 0; c < channelCount; c++) {
+            if (count[c] == 0) {
+                continue;
+            }
+            WritableMap channel = Arguments.createMap();
+            channel.putString("name", names[c]);
+            channel.putDouble("count", count[c]);
+            channel.putDouble("min", min[c]);
+            channel.putDouble("max", max[c]);
+            channel.putDouble("mean", sum[c] / count[c]);
+            channel.putDouble("last", last[c]);
+            channels.pushMap(channel);
+            count[c] = 0;
+            sum[c] = 0;
+        }
+        summary.putArray("channels", channels);
+        windowStartMillis = now;
+        lines = 0;
+        invalidLines = 0;
+        sink.onWindow(summary);
+    }
+
+    /**
+     * Parses a decimal number such as "-12.5", "+3", ".5" or "6.02e23" from data[from, to),
+     * ignoring spaces around it. Digits beyond 18 significant ones only scale the number.
+     *
+     * @return NaN if the range is not a number
+     */
+    static double parseNumber(byte[] data, int from, int to) {
+        while (from < to && isSpace(data[from])) from++;
+        while (to > from && isSpace(data[to - 1])) to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean any = false;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    if (point) {
+                        scale--;
+                    }
+                } else if (!point) {
+                    scale++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        if (i < to && (data[i] == 'e' || data[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (data[i] == '-' || data[i] == '+')) {
+                negativeExponent = data[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            boolean exponentDigits = false;
+            for (; i < to && data[i] >= '0' && data[i] <= '9'; i++) {
+                exponentDigits = true;
+                exponent = Math.min(exponent * 10 + (data[i] - '0'), 1000);
+            }
+            if (!exponentDigits) {
+                return Double.NaN;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != to) {
+            return Double.NaN;
+        }
+        double value = mantissa;
+        if (scale > 0) {
+            value *= scale < POW10.length ? POW10[scale] : Math.pow(10, scale);
+        } else if (scale < 0) {
+            value /= -scale < POW10.length ? POW10[-scale] : Math.pow(10, -scale);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
@@ -0,0 +1,127 @@
+package com.melihyarikkaya.rnserialport;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * Decodes received chunks to text for RETURNED_DATA_TYPE_TEXT.
+ *
+ * The decoder is streaming: the bytes of a character split across two chunks are kept
+ * until the rest arrives, so multi-byte UTF-8 never turns into garbage at chunk borders.
+ * Malformed input is replaced with U+FFFD. With line splitting, only complete lines are
+ * returned, without their "\n", "\r\n" or "\r" ending; a line reaching maxLineLength
+ * characters is returned as it is, so a device that never ends a line can't grow it forever.
+ *
+ * Used from the dispatch thread only.
+ */
+class TextDecoder {
+
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private final boolean splitLines;
+    private final int maxLineLength;
+
+    // Bytes of an incomplete character, at most a few.
+    private byte[] carry = new byte[8];
+    private int carryLength = 0;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    private final StringBuilder line = new StringBuilder();
+    // A "\r" ended the last line, so a "\n" right after it belongs to the same ending.
+    private boolean afterCr = false;
+
+    TextDecoder(Charset charset, boolean splitLines, int maxLineLength) {
+        this.charset = charset;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.splitLines = splitLines;
+        this.maxLineLength = Math.max(1, maxLineLength);
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
+    boolean splitsLines() {
+        return splitLines;
+    }
+
+    /**
+     * @return the text of every character completed by data, empty if there is none
+     */
+    String decode(byte[] data) {
+        CharBuffer decoded = decodeChunk(data);
+        return decoded.toString();
+    }
+
+    /**
+     * Adds the lines completed by data to lines.
+     */
+    void decodeLines(byte[] data, List<String> lines) {
+        CharBuffer decoded = decodeChunk(data);
+        while (decoded.hasRemaining()) {
+            char c = decoded.get();
+            if (c == '\n' && afterCr) {
+                afterCr = false;
+                continue;
+            }
+            afterCr = c == '\r';
+            if (c == '\n' || c == '\r') {
+                lines.add(line.toString());
+                line.setLength(0);
+                continue;
+            }
+            line.append(c);
+            if (line.length() >= maxLineLength) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Drops a partial character and line, e.g. when the link went down.
+     */
+    void reset() {
+        decoder.reset();
+        carryLength = 0;
+        line.setLength(0);
+        afterCr = false;
+    }
+
+    /**
+     * Decodes the carried bytes and data; the returned buffer is ready for reading and
+     * valid until the next call.
+     */
+    private CharBuffer decodeChunk(byte[] data) {
+        ByteBuffer in;
+        if (carryLength == 0) {
+            in = ByteBuffer.wrap(data);
+        } else {
+            byte[] joined = new byte[carryLength + data.length];
+            System.arraycopy(carry, 0, joined, 0, carryLength);
+            System.arraycopy(data, 0, joined, carryLength, data.length);
+            in = ByteBuffer.wrap(joined);
+        }
+
+        int required = (int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < required) {
+            chars = CharBuffer.allocate(Math.max(required, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.decode(in, chars, false);
+        chars.flip();
+
+        carryLength = in.remaining();
+        if (carryLength > carry.length) {
+            carry = new byte[carryLength];
+        }
+        in.get(carry, 0, carryLength);
+        return chars;
+    }
+}
@@ -0,0 +1,103 @@
+package com.melihyarikkaya.rnserialport;
+
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbManager;
+
+import com.felhr.usbserial.UsbSerialDevice;
+
+/**
+ * Transport over a usb serial device, driven by the UsbSerial library.
+ */
+class UsbSerialTransport implements SerialTransport {
+
+    private final UsbManager usbManager;
+    private final UsbDevice device;
+    private final PortSettings settings;
+
+    private volatile UsbDeviceConnection connection;
+    private volatile UsbSerialDevice serialPort;
+    // Read once the device is open, as Android 10 and above need the permission for it.
+    private volatile String serialNumber;
+
+    UsbSerialTransport(UsbManager usbManager, UsbDevice device, PortSettings settings) {
+        this.usbManager = usbManager;
+        this.device = device;
+        this.settings = settings;
+    }
+
+    UsbDevice getDevice() {
+        return device;
+    }
+
+    @Override
+    public String getName() {
+        return device.getDeviceName();
+    }
+
+    @Override
+    public boolean open() {
+        connection = usbManager.openDevice(device);
+        UsbSerialDevice port;
+        if (settings.driver.equals("AUTO")) {
+            port = UsbSerialDevice.createUsbSerialDevice(device, connection, settings.portInterface);
+        } else {
+            port = UsbSerialDevice.createUsbSerialDevice(settings.driver, device, connection, settings.portInterface);
+        }
+        if (port == null || !port.open()) {
+            return false;
+        }
+        serialPort = port;
+        try {
+            serialNumber = device.getSerialNumber();
+        } catch (SecurityException ignored) {}
+        return true;
+    }
+
+    /**
+     * Whether an attached device is this one again: same vendor and product id, and the
+     * same serial number when both are known.
+     */
+    boolean isSameDevice(DeviceRegistry.Entry entry) {
+        if (entry.vendorId != device.getVendorId() || entry.productId != device.getProductId()) {
+            return false;
+        }
+        String known = serialNumber;
+        return known == null || entry.serialNumber == null || known.equals(entry.serialNumber);
+    }
+
+    @Override
+    public void setLineSettings(int baudRate, int dataBits, int stopBits, int parity, int flowControl) {
+        UsbSerialDevice port = serialPort;
+        if (port == null) {
+            return;
+        }
+        port.setBaudRate(baudRate);
+        port.setDataBits(dataBits);
+        port.setStopBits(stopBits);
+        port.setParity(parity);
+        port.setFlowControl(flowControl);
+    }
+
+    @Override
+    public void write(byte[] data) {
+        serialPort.write(data);
+    }
+
+    @Override
+    public void startReading(ReadCallback callback, int bufferSize) {
+        serialPort.read(callback::onReceivedData, bufferSize);
+    }
+
+    @Override
+    public void close() {
+        UsbSerialDevice port = serialPort;
+        if (port != null) {
+            port.close();
+        } else if (connection != null) {
+            connection.close();
+        }
+        serialPort = null;
+        connection = null;
+    }
+}
@@ -34,7 +34,51 @@ const definitions = {
   },
   RETURNED_DATA_TYPES: {
     INTARRAY : 1,
-    HEXSTRING: 2
+    HEXSTRING: 2,
+    BASE64   : 3,
+    SHARED_BUFFER: 4,
+    TEXT     : 5
+  },
+  FRAMING_TYPES: {
+    NONE         : 0,
+    DELIMITER    : 1,
+    FIXED_LENGTH : 2,
+    LENGTH_PREFIX: 3,
+    SLIP         : 4,
+    COBS         : 5
+  },
+  CHECKSUM_TYPES: {
+    NONE        : 0,
+    XOR         : 1,
+    LRC         : 2,
+    CRC8        : 3,
+    CRC16_MODBUS: 4,
+    CRC16_CCITT : 5,
+    CRC32       : 6
+  },
+  TELEMETRY_FORMATS: {
+    NONE     : 0,
+    CSV      : 1,
+    KEY_VALUE: 2
+  },
+  OVERFLOW_POLICIES: {
+    DROP_OLDEST  : 1,
+    DROP_NEWEST  : 2,
+    PAUSE_READING: 3
+  },
+  CONNECTION_STATES: {
+    IDLE              : 0,
+    CONNECTING        : 1,
+    CONNECTED         : 2,
+    RETRY_WAIT        : 3,
+    WAITING_FOR_DEVICE: 4,
+    CLOSED            : 5
+  },
+  FILE_TRANSFER_PROTOCOLS: {
+    RAW      : 0,
+    XMODEM   : 1,
+    XMODEM_1K: 2,
+    YMODEM   : 3
   },
   DRIVER_TYPES: {
     AUTO    : "AUTO",
@@ -54,12 +98,79 @@ const actions = {
   ON_ERROR                : 'onError',
   ON_CONNECTED            : 'onConnected',
   ON_DISCONNECTED         : 'onDisconnected',
-  ON_READ_DATA            : 'onReadDataFromPort'
+  ON_READ_DATA            : 'onReadDataFromPort',
+  ON_STATS                : 'onStats',
+  ON_MODBUS_DATA          : 'onModbusData',
+  ON_REPLAY_FINISHED      : 'onReplayFinished',
+  ON_CONNECTION_STATE     : 'onConnectionState',
+  ON_RECONNECTED          : 'onReconnected',
+  ON_TELEMETRY            : 'onTelemetry',
+  ON_FILE_TRANSFER_PROGRESS: 'onFileTransferProgress'
 };
 
+// === Payload decoding ===
+const BASE64_ALPHABET = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+const BASE64_LOOKUP = new Uint8Array(128);
+for (let i = 0; i < BASE64_ALPHABET.length; i++) {
+  BASE64_LOOKUP[BASE64_ALPHABET.charCodeAt(i)] = i;
+}
+
+// Decodes a BASE64 "ON_READ_DATA" payload into raw bytes.
+function base64ToBytes(base64) {
+  let length = base64.length;
+  while (length > 0 && base64.charCodeAt(length - 1) === 61 /* '=' */) {
+    length--;
+  }
+
+  const bytes = new Uint8Array((length * 3) >> 2);
+  let out = 0;
+  let i = 0;
+  for (; i + 4 <= length; i += 4) {
+    const n = (BASE64_LOOKUP[base64.charCodeAt(i)] << 18)
+      | (BASE64_LOOKUP[base64.charCodeAt(i + 1)] << 12)
+      | (BASE64_LOOKUP[base64.charCodeAt(i + 2)] << 6)
+      | BASE64_LOOKUP[base64.charCodeAt(i + 3)];
+    bytes[out++] = n >> 16;
+    bytes[out++] = (n >> 8) & 0xFF;
+    bytes[out++] = n & 0xFF;
+  }
+
+  const rest = length - i;
+  if (rest >= 2) {
+    const n = (BASE64_LOOKUP[base64.charCodeAt(i)] << 18)
+      | (BASE64_LOOKUP[base64.charCodeAt(i + 1)] << 12)
+      | (rest === 3 ? BASE64_LOOKUP[base64.charCodeAt(i + 2)] << 6 : 0);
+    bytes[out++] = n >> 16;
+    if (rest === 3) {
+      bytes[out++] = (n >> 8) & 0xFF;
+    }
+  }
+  return bytes;
+}
+
+const SHARED_BUFFER_HEADER_SIZE = 16;
+
+// Copies a SHARED_BUFFER "ON_READ_DATA" chunk out of the shared read buffer.
+// Returns null when native code already overwrote the chunk (the reader fell behind).
+function readSharedChunk(event) {
+  const buffer = global.__rnSerialportReadBuffer;
+  if (!buffer) {
+    return null;
+  }
+
+  const bytes = new Uint8Array(buffer, event.offset, event.length).slice();
+  // The start cursor is published before native code overwrites any byte, so it is read last.
+  const startCursor = new Float64Array(buffer, 0, 1)[0];
+  const capacity = buffer.byteLength - SHARED_BUFFER_HEADER_SIZE;
+
+  return startCursor - event.cursor <= capacity ? bytes : null;
+}
+
 // === Export everything (exact same as original) ===
 export {
   RNSerialport,
   definitions,
-  actions
+  actions,
+  base64ToBytes,
+  readSharedChunk
 };
\ No newline at end of file
@@ -3,8 +3,11 @@ import { TurboModuleRegistry } from 'react-native';
 
 // === Enums (must match Definitions.java) ===
 export enum ReturnedDataTypes {
-  INTARRAY = 0,
-  HEXSTRING = 1,
+  INTARRAY = 1,
+  HEXSTRING = 2,
+  BASE64 = 3,
+  SHARED_BUFFER = 4,
+  TEXT = 5,
 }
 
 export enum DataBits {
@@ -41,15 +44,305 @@ export enum Drivers {
   CDC = 'cdc',
 }
 
+export enum FramingTypes {
+  NONE = 0,
+  DELIMITER = 1,
+  FIXED_LENGTH = 2,
+  LENGTH_PREFIX = 3,
+  SLIP = 4,
+  COBS = 5,
+}
+
+export enum ChecksumTypes {
+  NONE = 0,
+  XOR = 1,
+  LRC = 2,
+  CRC8 = 3,
+  CRC16_MODBUS = 4,
+  CRC16_CCITT = 5,
+  CRC32 = 6,
+}
+
+export enum TelemetryFormats {
+  NONE = 0,
+  CSV = 1,
+  KEY_VALUE = 2,
+}
+
+export enum OverflowPolicies {
+  DROP_OLDEST = 1,
+  DROP_NEWEST = 2,
+  PAUSE_READING = 3,
+}
+
+export enum ConnectionStates {
+  IDLE = 0,
+  CONNECTING = 1,
+  CONNECTED = 2,
+  RETRY_WAIT = 3,
+  WAITING_FOR_DEVICE = 4,
+  CLOSED = 5,
+}
+
+export enum FileTransferProtocols {
+  RAW = 0,
+  XMODEM = 1, // 128 byte blocks
+  XMODEM_1K = 2, // 1024 byte blocks
+  YMODEM = 3,
+}
+
 // === Types ===
 export interface Device {
   name: string;
   vendorId: number;
   productId: number;
+  serialNumber: string | null; // null until the app has permission for the device on Android 10+
+  interfaceCount: number;
+  driver: string | null; // driver AUTO picks, null when unsupported
+}
+
+export interface DeviceMatch {
+  vendorId?: number;
+  productId?: number;
+  serialNumber?: string;
+}
+
+export interface DeviceMatchRule {
+  vendorId?: number;
+  productId?: number;
+  serialNumber?: string;
+  driver?: string;
+  exclude?: boolean; // default false
+  multiple?: boolean; // auto-connect even while another port is connected, default false
 }
 
 export type Devices = Device[];
 
+export interface OpenPort {
+  portId: number;
+  name: string;
+  connected: boolean;
+  state: ConnectionStates;
+}
+
+export interface ReconnectOptions {
+  initialDelayMs?: number; // first retry delay, doubled per failed attempt; default 250
+  maxDelayMs?: number; // default 10000
+  maxAttempts?: number; // failed opens before giving up, 0 = never; default 0
+}
+
+export interface TextDecodingOptions {
+  splitLines?: boolean; // emit complete lines without their line ending; default false
+  maxLineLength?: number; // characters before a line is emitted unended; default 65536
+}
+
+export interface LoopbackOptions {
+  name?: string; // default "loopback-<portId>"
+  echo?: boolean; // written bytes are read back, default true
+  generate?: boolean; // produce read data on its own, default false
+  bytesPerSecond?: number; // generation rate, 0 = as fast as the read pipeline takes it
+  chunkSize?: number; // bytes per generated read, default 64
+  pattern?: number[]; // repeated as generated data, default 0..255
+}
+
+export interface ReplayOptions {
+  name?: string; // default "replay-<portId>"
+  speed?: number; // 1 = recorded timing, 10 = ten times faster, 0 = as fast as possible; default 1
+}
+
+export interface FramingOptions {
+  delimiter?: number[]; // DELIMITER
+  keepDelimiter?: boolean; // DELIMITER, default false
+  length?: number; // FIXED_LENGTH
+  lengthOffset?: number; // LENGTH_PREFIX: header bytes before the length field, default 0
+  lengthSize?: number; // LENGTH_PREFIX: 1, 2 or 4, default 1
+  bigEndian?: boolean; // LENGTH_PREFIX, default true
+  lengthAdjust?: number; // LENGTH_PREFIX: added to the length field to get the body length, default 0
+  maxFrameLength?: number; // default 65536
+  batch?: boolean; // one event with "payloads" per usb transfer, default false
+}
+
+export interface ChecksumOptions {
+  startOffset?: number; // leading frame bytes not covered by the checksum, default 0
+  endOffset?: number; // frame bytes after the checksum, default 0
+  littleEndian?: boolean; // default true for CRC16_MODBUS and CRC32, false otherwise
+  strip?: boolean; // remove the checksum from valid frames, default false
+}
+
+export interface TelemetryOptions {
+  fields?: Array<string | null>; // CSV: column names, null skips a column; KEY_VALUE: keys to keep, default all
+  separator?: string; // one ASCII character between fields, default ","
+  windowMs?: number; // default 1000
+  passthrough?: boolean; // keep emitting the read data, default false
+}
+
+export interface TransactionOptions {
+  responseLength?: number; // complete after this many bytes, prefix included
+  terminator?: number[]; // complete after these bytes
+  prefix?: number[]; // response starts with these bytes; anything before them is dropped
+  timeoutMs?: number; // from when the request is sent, not while it waits behind others; default 1000
+  maxResponseLength?: number; // default 65536
+}
+
+export interface TransactionResult {
+  portId: number;
+  payload: string | number[];
+  elapsedMs: number;
+}
+
+export interface ModbusRequest {
+  slaveId: number; // 1-247
+  functionCode: number; // 1, 2, 3, 4, 5, 6, 15 or 16
+  address: number;
+  quantity?: number; // reads: number of bits or registers
+  values?: number[]; // writes: bits as 0/1, registers as 0-65535
+  timeoutMs?: number; // default 1000
+}
+
+export interface ModbusResponse {
+  portId: number;
+  slaveId: number;
+  functionCode: number;
+  address: number;
+  values: number[]; // read values, or the written value for 5 and 6
+  elapsedMs: number;
+}
+
+export interface ModbusPoll {
+  slaveId: number;
+  functionCode: number; // 1, 2, 3 or 4
+  address: number;
+  quantity: number;
+  intervalMs: number;
+  timeoutMs?: number; // default 1000
+}
+
+export interface PeriodicWriteOptions {
+  fixedRate?: boolean; // false waits periodMs after each write instead; default true
+  initialDelayMs?: number; // default 0
+}
+
+export interface PeriodicWriteStats {
+  id: number;
+  periodMs: number;
+  fixedRate: boolean;
+  writes: number;
+  skipped: number; // ticks with the port down or the write queue full
+  meanJitterMicros: number; // lateness against the planned time
+  maxJitterMicros: number;
+}
+
+export interface CaptureOptions {
+  maxFileBytes?: number; // rotate to path.1, path.2, ... above this size; default 16 MB, 0 never
+  maxFiles?: number; // delete the oldest files above this count; default 0, keep all
+  maxQueuedBytes?: number; // records beyond this backlog are dropped; default 4 MB
+}
+
+export interface FileTransferOptions {
+  chunkSize?: number; // RAW send: bytes read and queued at once, default 16384
+  timeoutMs?: number; // wait for a reply, or the first RAW data, default 10000
+  idleTimeoutMs?: number; // RAW receive ends after this silence, default 2000
+  length?: number; // RAW receive ends after this many bytes, default 0 (at idle)
+  maxRetries?: number; // resends of one block, default 10
+  progressIntervalMs?: number; // minimum gap of onFileTransferProgress events, default 250
+}
+
+export interface FileTransferResult {
+  bytes: number;
+  blocks: number;
+  retries: number;
+  durationMs: number;
+  bytesPerSecond: number;
+  name?: string; // YMODEM receive: file name sent by the other side
+}
+
+export interface CaptureSummary {
+  files: string[];
+  records: number;
+  bytes: number;
+  droppedRecords: number;
+  droppedBytes: number;
+  durationMs: number;
+}
+
+export interface ReadResult {
+  portId: number;
+  payload: string | number[];
+}
+
+export interface ReadBufferStatus {
+  capacity: number;
+  available: number;
+  discardedBytes: number;
+  readingPaused: boolean;
+}
+
+export interface WriteQueueStatus {
+  portId: number;
+  queuedWrites: number;
+  queuedBytes: number;
+  maxQueuedBytes: number;
+  bytesWritten: number;
+  writesCompleted: number;
+  transfers: number;
+}
+
+export interface ErrorCount {
+  code: number;
+  count: number;
+}
+
+export interface LatencyBucket {
+  upperMicros: number; // -1 for the last, unbounded bucket
+  count: number;
+}
+
+export interface LatencyStats {
+  count: number;
+  meanMicros: number;
+  maxMicros: number;
+  p50Micros: number;
+  p90Micros: number;
+  p99Micros: number;
+  histogram: LatencyBucket[];
+}
+
+export interface PortStats {
+  portId: number;
+  uptimeMs: number;
+  bytesRead: number;
+  chunksRead: number;
+  avgChunkSize: number;
+  maxChunkSize: number;
+  bytesWritten: number;
+  writesCompleted: number;
+  transfers: number;
+  eventsEmitted: number;
+  dispatchQueued: number; // chunks handed over by the usb thread, not yet processed
+  dispatchFullWaits: number; // times the usb thread waited for room in the handoff
+  readBufferSize: number; // in use since the link opened
+  poolAcquired: number; // write buffers taken from the pool
+  poolAllocated: number; // of those, allocated because the pool had none
+  poolAllocatedBytes: number;
+  suppressedFrames: number;
+  suppressedBytes: number;
+  invalidFrames: number; // frames dropped by the checksum stage
+  invalidBytes: number;
+  errors: ErrorCount[];
+  periodicWrites: PeriodicWriteStats[];
+  latency: LatencyStats;
+}
+
+export interface MemoryStats {
+  gcCount: number; // -1 when the runtime does not report it
+  gcTimeMs: number;
+  blockingGcCount: number;
+  blockingGcTimeMs: number;
+  bytesAllocated: number;
+  allocationRate: number; // bytes per second since the previous call, -1 on the first
+  heapUsedBytes: number;
+}
+
 // === Spec ===
 export interface Spec extends TurboModule {
   // Service Control
@@ -57,34 +350,98 @@ export interface Spec extends TurboModule {
   stopUsbService(): void;
 
   // Status
-  isOpen(): Promise<boolean>;
+  isOpen(portId?: number): Promise<boolean>;
   isServiceStarted(): Promise<boolean>;
   isSupported(deviceName: string): Promise<boolean>;
 
   // Device List
   getDeviceList(): Promise<Devices>;
+  findDevices(match: DeviceMatch): Promise<Devices>;
+  getOpenPorts(): Promise<OpenPort[]>;
 
   // Connection
-  connectDevice(deviceName: string, baudRate: number): void;
-  disconnect(): void;
+  // Returns the port id, or -1 when the connection could not be started.
+  // Methods taking an optional portId use the last connected port without it.
+  connectDevice(deviceName: string, baudRate: number): number;
+  disconnect(portId?: number): void;
+  // In-memory port for load testing without hardware; returns the port id.
+  connectLoopback(options: LoopbackOptions): number;
+  // Plays the read records of a startCapture file back through the read pipeline; returns the port id.
+  // onReplayFinished reports the achieved rates at the end of the file.
+  connectReplay(path: string, options: ReplayOptions): number;
 
   // Write Methods
-  writeString(data: string): void;
-  writeBase64(data: string): void;
-  writeHexString(data: string): void;
-  writeBytes(data: number[]): void; // byte[] in Java
+  // Writes are queued per port; the promise resolves with the byte count once handed to the driver.
+  writeString(data: string, portId?: number): Promise<number>;
+  writeBase64(data: string, portId?: number): Promise<number>;
+  writeHexString(data: string, portId?: number): Promise<number>;
+  writeBytes(data: number[], portId?: number): Promise<number>; // byte[] in Java
+  flush(portId?: number): Promise<number>;
+  // Writes the request and resolves the matching response; transactions on a port never interleave.
+  transact(data: number[], options: TransactionOptions, portId?: number): Promise<TransactionResult>;
+
+  // Modbus RTU
+  modbusRequest(request: ModbusRequest, portId?: number): Promise<ModbusResponse>;
+  // Returns the poll id, or -1 for an invalid poll. Changed values arrive as onModbusData events.
+  addModbusPoll(poll: ModbusPoll, portId?: number): number;
+  removeModbusPoll(pollId: number, portId?: number): void;
+  schedulePeriodicWrite(data: number[], periodMs: number, options: PeriodicWriteOptions, portId?: number): number;
+  cancelPeriodicWrite(scheduleId: number, portId?: number): void;
+  getWriteQueueStatus(portId?: number): Promise<WriteQueueStatus>;
 
   // Setters
-  setReturnedDataType(type: ReturnedDataTypes): void;
-  setInterface(iFace: number): void;
-  setDataBit(bit: DataBits): void;
-  setStopBit(bit: StopBits): void;
-  setParity(parity: Parities): void;
-  setFlowControl(control: FlowControls): void;
+  // Without a portId these change the defaults for new connections and the last connected port.
+  setReturnedDataType(type: ReturnedDataTypes, portId?: number): void;
+  setInterface(iFace: number, portId?: number): void;
+  setDataBit(bit: DataBits, portId?: number): void;
+  setStopBit(bit: StopBits, portId?: number): void;
+  setParity(parity: Parities, portId?: number): void;
+  setFlowControl(control: FlowControls, portId?: number): void;
+  setBaudRate(baudRate: number, portId?: number): void;
   setAutoConnectBaudRate(baudRate: number): void;
   setAutoConnect(status: boolean): void;
-  setDriver(driver: Drivers): void;
-  setReadBufferSize(bufferSize: number): void;
+  // The first rule a device matches decides; include rules also rank devices by their order.
+  setAutoConnectRules(rules: DeviceMatchRule[]): void;
+  setDriver(driver: Drivers, portId?: number): void;
+  // 0 picks the size from the baud rate and the observed reads, on every open of the link.
+  setReadBufferSize(bufferSize: number, portId?: number): void;
+  setReadCoalescing(maxBytes: number, maxDelayMs: number, portId?: number): void;
+  setFraming(type: FramingTypes, options: FramingOptions, portId?: number): void;
+  // Drops frames whose checksum does not match; they are only counted in getStats.
+  setFrameChecksum(type: ChecksumTypes, options: ChecksumOptions, portId?: number): void;
+  setReadRingBuffer(capacity: number, overflowPolicy: OverflowPolicies, portId?: number): void;
+  setDuplicateFilter(enabled: boolean, heartbeatMs: number, portId?: number): void;
+  // Charset and line splitting of the TEXT returned data type.
+  setTextDecoding(charset: string, options: TextDecodingOptions, portId?: number): void;
+  // Aggregates numeric lines into onTelemetry events, one per window.
+  setTelemetry(format: TelemetryFormats, options: TelemetryOptions, portId?: number): void;
+  // Keeps a usb port through detach and failed opens; onReconnected reports the time to recover.
+  setAutoReconnect(enabled: boolean, options: ReconnectOptions, portId?: number): void;
+  setWriteQueue(maxQueuedBytes: number, maxTransferSize: number, portId?: number): void;
+  installSharedReadBuffer(capacity: number): boolean;
+
+  // Pull Reading
+  read(maxBytes: number, timeoutMs: number, portId?: number): Promise<ReadResult>;
+  available(portId?: number): Promise<number>;
+  getReadBufferStatus(portId?: number): Promise<ReadBufferStatus>;
+
+  // Capture
+  // Records every chunk read and written, timestamped, to a binary file written off the usb thread.
+  startCapture(path: string, options: CaptureOptions, portId?: number): Promise<void>;
+  stopCapture(portId?: number): Promise<CaptureSummary | null>; // null when nothing was captured
+
+  // File transfer
+  // Streams a file from disk through the write queue; modem protocols handle ACK/NAK natively.
+  sendFile(path: string, protocol: FileTransferProtocols, options: FileTransferOptions, portId?: number): Promise<FileTransferResult>;
+  // Writes received data straight to path; read events pause while it runs.
+  receiveFile(path: string, protocol: FileTransferProtocols, options: FileTransferOptions, portId?: number): Promise<FileTransferResult>;
+  cancelFileTransfer(portId?: number): boolean; // false when no transfer runs
+
+  // Stats
+  // Counters start at zero on every connectDevice.
+  getStats(portId?: number): Promise<PortStats>;
+  getMemoryStats(): Promise<MemoryStats>;
+  setStatsInterval(intervalMs: number): void; // 0 stops the onStats event
 
   // Defaults
   loadDefaultConnectionSetting(): void;
@@ -1,5 +1,5 @@
 // types/index.d.ts
-import type { Spec } from '../specs/NativeRNSerialport';
+import type { Spec, PortStats } from '../specs/NativeRNSerialport';
 
 // === Native module with helpers ===
 declare const RNSerialport: Spec & {
@@ -16,13 +16,74 @@ export interface IDevice {
 export type Devices = Array<IDevice> | null;
 
 export interface IOnReadData {
+  portId: number;
   payload: string | Array<number>
 }
+export interface IOnReadFrames {
+  portId: number;
+  payloads: Array<string | Array<number>>
+}
+export interface IOnReadSharedData {
+  portId: number;
+  offset: number;
+  length: number;
+  cursor: number;
+}
 export interface IOnError {
   status: boolean;
   errorCode: number;
   errorMessage: string;
   exceptionErrorMessage?: string;
+  portId?: number;
+}
+export interface IOnConnected {
+  portId: number;
+}
+export interface IOnDisconnected {
+  portId: number;
+}
+export type IOnStats = PortStats;
+export interface IOnModbusData {
+  portId: number;
+  pollId: number;
+  slaveId: number;
+  functionCode: number;
+  changes: Array<{ address: number; value: number }>;
+}
+export interface IOnReplayFinished {
+  portId: number;
+  records: number;
+  bytes: number;
+  events: number;
+  durationMs: number;
+  eventsPerSecond: number;
+  bytesPerSecond: number;
+}
+export interface IOnConnectionState {
+  portId: number;
+  state: number;
+  previousState: number;
+  failedAttempts: number;
+}
+export interface IOnReconnected {
+  portId: number;
+  recoverMs: number;
+  attempts: number;
+}
+export interface IOnTelemetry {
+  portId: number;
+  windowStartMs: number;
+  windowMs: number;
+  lines: number;
+  invalidLines: number;
+  channels: Array<{ name: string; count: number; min: number; max: number; mean: number; last: number }>;
+}
+export interface IOnFileTransferProgress {
+  portId: number;
+  sending: boolean;
+  bytes: number;
+  totalBytes: number; // -1 when unknown
+  bytesPerSecond: number;
 }
 export interface IOnServiceStarted {
   deviceAttached: boolean
@@ -56,6 +117,50 @@ interface DefinitionsStatic {
   RETURNED_DATA_TYPES: {
     INTARRAY: number;
     HEXSTRING: number;
+    BASE64: number;
+    SHARED_BUFFER: number;
+    TEXT: number;
+  };
+  FRAMING_TYPES: {
+    NONE: number;
+    DELIMITER: number;
+    FIXED_LENGTH: number;
+    LENGTH_PREFIX: number;
+    SLIP: number;
+    COBS: number;
+  };
+  CHECKSUM_TYPES: {
+    NONE: number;
+    XOR: number;
+    LRC: number;
+    CRC8: number;
+    CRC16_MODBUS: number;
+    CRC16_CCITT: number;
+    CRC32: number;
+  };
+  TELEMETRY_FORMATS: {
+    NONE: number;
+    CSV: number;
+    KEY_VALUE: number;
+  };
+  OVERFLOW_POLICIES: {
+    DROP_OLDEST: number;
+    DROP_NEWEST: number;
+    PAUSE_READING: number;
+  };
+  CONNECTION_STATES: {
+    IDLE: number;
+    CONNECTING: number;
+    CONNECTED: number;
+    RETRY_WAIT: number;
+    WAITING_FOR_DEVICE: number;
+    CLOSED: number;
+  };
+  FILE_TRANSFER_PROTOCOLS: {
+    RAW: number;
+    XMODEM: number;
+    XMODEM_1K: number;
+    YMODEM: number;
   };
   DRIVER_TYPES: {
     AUTO: string,
@@ -76,15 +181,25 @@ interface ActionsStatic {
   ON_ERROR: string,
   ON_CONNECTED: string,
   ON_DISCONNECTED: string,
-  ON_READ_DATA: string
+  ON_READ_DATA: string,
+  ON_STATS: string,
+  ON_MODBUS_DATA: string,
+  ON_REPLAY_FINISHED: string,
+  ON_CONNECTION_STATE: string,
+  ON_RECONNECTED: string,
+  ON_TELEMETRY: string,
+  ON_FILE_TRANSFER_PROGRESS: string
 }
 export var actions: ActionsStatic;
 
+export function base64ToBytes(base64: string): Uint8Array;
+export function readSharedChunk(event: IOnReadSharedData): Uint8Array | null;
+
 export type DataBits = 5 | 6 | 7 | 8;
 export type StopBits = 1 | 2 | 3;
 export type Parities = 0 | 1 | 2 | 3 | 4;
 export type FlowControls = 0 | 1 | 2 | 3;
-export type ReturnedDataTypes = 1 | 2;
+export type ReturnedDataTypes = 1 | 2 | 3 | 4 | 5;
 export type Drivers = "AUTO" | "cdc" | "ch34x" | "cp210x" | "ftdi" | "pl2303";
 
 // === Default export ===